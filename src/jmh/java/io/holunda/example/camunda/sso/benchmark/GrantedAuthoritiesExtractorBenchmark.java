@@ -0,0 +1,78 @@
+package io.holunda.example.camunda.sso.benchmark;
+
+import io.holunda.example.camunda.sso.config.spring.AuthorityRegistry;
+import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a verified token into authorities and back into camunda groups.
+ * <ul>
+ *     <li>{@code convert*} is the full {@link GrantedAuthoritiesExtractor} as used by the resource server, including the memoized authority lists.</li>
+ *     <li>{@code readRoles} is the uncached claim walking.</li>
+ *     <li>{@code extractRoles} is the conversion of an authentication to camunda groups.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrantedAuthoritiesExtractorBenchmark {
+
+    @Param({"10", "100", "500", "2000"})
+    public int roleCount;
+
+    @Param({"1", "10"})
+    public int clientCount;
+
+    @Param({"0", "12288"})
+    public int payloadPadding;
+
+    private Jwt jwt;
+    private GrantedAuthoritiesExtractor extractor;
+    private AbstractAuthenticationToken authentication;
+
+    @Setup
+    public void setUp() {
+        jwt = TokenFixtures.jwt(TokenFixtures.claims(roleCount, clientCount, payloadPadding));
+        extractor = new GrantedAuthoritiesExtractor(new AuthorityRegistry(), SsoMetrics.DISABLED);
+        authentication = extractor.convert(jwt);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return extractor.convert(jwt);
+    }
+
+    @Benchmark
+    public void readRoles(Blackhole blackhole) {
+        Collection<String> realmRoles = GrantedAuthoritiesExtractor.getRealmAuthorities(jwt);
+        List<String> clientRoles = GrantedAuthoritiesExtractor.getClientAuthorities(jwt);
+        blackhole.consume(realmRoles);
+        blackhole.consume(clientRoles);
+    }
+
+    @Benchmark
+    public List<String> extractRoles() {
+        return GrantedAuthoritiesExtractor.extractRoles(authentication);
+    }
+}
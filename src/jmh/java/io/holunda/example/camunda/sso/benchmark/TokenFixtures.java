@@ -0,0 +1,113 @@
+package io.holunda.example.camunda.sso.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates Keycloak-like tokens for the benchmarks. Roles are split evenly between the realm and the clients.
+ */
+public final class TokenFixtures {
+
+    public static final String CLIENT_PREFIX = "client-";
+    public static final String USER_ID = "5e1b1a2c-0000-4000-8000-000000000001";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+    private TokenFixtures() {
+    }
+
+    /**
+     * @param roleCount      total number of realm and client roles.
+     * @param clientCount    number of clients in {@code resource_access}.
+     * @param payloadPadding size of an additional custom claim in characters, to simulate large custom claims.
+     */
+    public static Map<String, Object> claims(int roleCount, int clientCount, int payloadPadding) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", "http://localhost/realms/benchmark");
+        claims.put("sub", USER_ID);
+        claims.put("given_name", "Bench");
+        claims.put("family_name", "Mark");
+        claims.put("email", "bench.mark@example.com");
+
+        int realmRoleCount = roleCount / 2;
+        claims.put("realm_access", Map.of("roles", roles("realm-role-", realmRoleCount)));
+
+        Map<String, Object> resourceAccess = new LinkedHashMap<>();
+        int clientRoleCount = roleCount - realmRoleCount;
+        for (int client = 0; client < clientCount; client++) {
+            int rolesOfClient = clientRoleCount / clientCount + (client < clientRoleCount % clientCount ? 1 : 0);
+            resourceAccess.put(CLIENT_PREFIX + client, Map.of("roles", roles("client-role-", rolesOfClient)));
+        }
+        claims.put("resource_access", resourceAccess);
+
+        if (payloadPadding > 0) {
+            Map<String, Object> custom = new HashMap<>();
+            int chunk = 64;
+            for (int i = 0; i * chunk < payloadPadding; i++) {
+                custom.put("attribute-" + i, "x".repeat(Math.min(chunk, payloadPadding - i * chunk)));
+            }
+            claims.put("custom", custom);
+        }
+        return claims;
+    }
+
+    /**
+     * Creates a {@link Jwt} with the given claims whose token value is an (unsigned) serialized JWT with the same payload.
+     */
+    public static Jwt jwt(Map<String, Object> claims) {
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plusSeconds(3600);
+        Map<String, Object> payload = new LinkedHashMap<>(claims);
+        payload.put("iat", issuedAt.getEpochSecond());
+        payload.put("exp", expiresAt.getEpochSecond());
+        String tokenValue = encode(Map.of("alg", "RS256", "typ", "JWT")) + "." + encode(payload) + ".c2lnbmF0dXJl";
+
+        return Jwt.withTokenValue(tokenValue)
+                  .header("alg", "RS256")
+                  .claims(jwtClaims -> jwtClaims.putAll(claims))
+                  .issuedAt(issuedAt)
+                  .expiresAt(expiresAt)
+                  .build();
+    }
+
+    /**
+     * Binds {@link ApplicationProperties} the same way spring boot does, so that defaults apply.
+     */
+    public static ApplicationProperties applicationProperties(Map<String, String> properties) {
+        Map<String, String> source = new HashMap<>(properties);
+        source.putIfAbsent("application.web-app-role", CLIENT_PREFIX + "0:client-role-0");
+        source.putIfAbsent("application.registration", "benchmark");
+        return new Binder(new MapConfigurationPropertySource(source)).bind("application", Bindable.of(ApplicationProperties.class)).get();
+    }
+
+    private static List<String> roles(String prefix, int count) {
+        List<String> roles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            roles.add(prefix + i);
+        }
+        return roles;
+    }
+
+    private static String encode(Map<String, Object> json) {
+        try {
+            return BASE64.encodeToString(OBJECT_MAPPER.writeValueAsString(json).getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
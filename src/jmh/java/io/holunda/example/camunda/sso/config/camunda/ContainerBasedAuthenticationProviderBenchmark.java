@@ -0,0 +1,90 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.benchmark.TokenFixtures;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.holunda.example.camunda.sso.config.spring.AuthorityRegistry;
+import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.camunda.bpm.engine.rest.security.auth.AuthenticationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.StaticWebApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request work of camunda's {@code ContainerBasedAuthenticationFilter}: {@link OAuthContainerBasedAuthenticationProvider#extractAuthenticatedUser}
+ * for an already authenticated request, with a token generated with {@code roleCount} roles and {@code tenantCount} tenants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerBasedAuthenticationProviderBenchmark {
+
+    @Param({"10", "100", "500", "2000"})
+    public int roleCount;
+
+    @Param({"1", "10"})
+    public int clientCount;
+
+    @Param({"0", "12288"})
+    public int payloadPadding;
+
+    @Param({"0", "20"})
+    public int tenantCount;
+
+    private MockHttpServletRequest request;
+    private OAuthContainerBasedAuthenticationProvider provider;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> claims = TokenFixtures.claims(roleCount, clientCount, payloadPadding);
+        String[] tenants = new String[tenantCount];
+        for (int i = 0; i < tenantCount; i++) {
+            tenants[i] = "tenant-" + i;
+        }
+        claims.put("tenants", List.of(tenants));
+
+        GrantedAuthoritiesExtractor extractor = new GrantedAuthoritiesExtractor(new AuthorityRegistry(), SsoMetrics.DISABLED);
+        Authentication authentication = extractor.convert(TokenFixtures.jwt(claims));
+
+        ApplicationProperties applicationProperties = TokenFixtures.applicationProperties(Map.of("application.tenant-claim", "tenants"));
+        MockServletContext servletContext = new MockServletContext();
+        StaticWebApplicationContext applicationContext = new StaticWebApplicationContext();
+        applicationContext.setServletContext(servletContext);
+        applicationContext.getBeanFactory().registerSingleton("identitySnapshots",
+            new IdentitySnapshots(applicationProperties, RoleMapper.IDENTITY, new KnownUsers(applicationProperties, new SimpleMeterRegistry())));
+        applicationContext.getBeanFactory().registerSingleton("roleMapper", RoleMapper.IDENTITY);
+        applicationContext.getBeanFactory().registerSingleton("ssoMetrics", SsoMetrics.DISABLED);
+        applicationContext.refresh();
+        servletContext.setAttribute(WebApplicationContext.ROOT_WEB_APPLICATION_CONTEXT_ATTRIBUTE, applicationContext);
+
+        request = new MockHttpServletRequest(servletContext, "GET", "/engine-rest/task");
+        request.setUserPrincipal(authentication);
+        provider = new OAuthContainerBasedAuthenticationProvider();
+    }
+
+    @Benchmark
+    public AuthenticationResult extractAuthenticatedUser() {
+        return provider.extractAuthenticatedUser(request, null);
+    }
+}
@@ -0,0 +1,190 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.benchmark.TokenFixtures;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthGroup;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthUser;
+import io.holunda.example.camunda.sso.config.spring.AuthorityRegistry;
+import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identity queries as issued by the webapps (tasklist, cockpit, admin) against the {@link OAuthIdentityServiceProvider}, with the logged-in user's
+ * token generated with {@code roleCount} roles and optionally an {@link IdentityDirectory} of {@code directorySize} users.
+ * The benchmark lives in the provider's package to reach the package-private query classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentityServiceProviderBenchmark {
+
+    @Param({"10", "100", "500", "2000"})
+    public int roleCount;
+
+    @Param({"1", "10"})
+    public int clientCount;
+
+    @Param({"0", "10000"})
+    public int directorySize;
+
+    private JwtAuthenticationToken authentication;
+    private OAuthIdentityServiceProvider provider;
+    private IdentityDirectory identityDirectory;
+    private String userId;
+    private String groupId;
+    private String otherUserId;
+
+    @Setup
+    public void setUp() {
+        GrantedAuthoritiesExtractor extractor = new GrantedAuthoritiesExtractor(new AuthorityRegistry(), SsoMetrics.DISABLED);
+        authentication = (JwtAuthenticationToken) extractor.convert(TokenFixtures.jwt(TokenFixtures.claims(roleCount, clientCount, 0)));
+        userId = authentication.getName();
+        groupId = GrantedAuthoritiesExtractor.extractRoles(authentication).get(roleCount / 2);
+
+        if (directorySize > 0) {
+            identityDirectory = new IdentityDirectory(new GeneratedDirectoryClient(directorySize, roleCount), RoleMapper.IDENTITY, Duration.ofDays(1));
+            identityDirectory.refresh();
+        }
+        otherUserId = "user-" + (directorySize / 2);
+        ApplicationProperties applicationProperties = TokenFixtures.applicationProperties(Map.of());
+        KnownUsers knownUsers = new KnownUsers(applicationProperties, new SimpleMeterRegistry());
+        provider = new OAuthIdentityServiceProvider(
+            new IdentitySnapshots(applicationProperties, RoleMapper.IDENTITY, knownUsers), identityDirectory, knownUsers, SsoMetrics.DISABLED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (identityDirectory != null) {
+            identityDirectory.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Authenticated {
+
+        @Setup(Level.Iteration)
+        public void authenticate(IdentityServiceProviderBenchmark benchmark) {
+            SecurityContextHolder.getContext().setAuthentication(benchmark.authentication);
+        }
+
+        @TearDown(Level.Iteration)
+        public void clear() {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Benchmark
+    public User findCurrentUser(Authenticated authenticated) {
+        return provider.findUserById(userId);
+    }
+
+    @Benchmark
+    public User findOtherUser(Authenticated authenticated) {
+        return provider.findUserById(otherUserId);
+    }
+
+    @Benchmark
+    public List<User> listUsersByNameLike(Authenticated authenticated) {
+        return provider.createUserQuery().userLastNameLike("%4%").orderByUserLastName().asc().listPage(0, 50);
+    }
+
+    @Benchmark
+    public Group findGroup(Authenticated authenticated) {
+        return provider.findGroupById(groupId);
+    }
+
+    @Benchmark
+    public List<Group> listCurrentUserGroups(Authenticated authenticated) {
+        return provider.createGroupQuery().groupMember(userId).orderByGroupName().asc().list();
+    }
+
+    @Benchmark
+    public long countCurrentUserGroups(Authenticated authenticated) {
+        return provider.createGroupQuery().groupMember(userId).count();
+    }
+
+    @Benchmark
+    public List<Group> listGroupsPage(Authenticated authenticated) {
+        return provider.createGroupQuery().orderByGroupId().asc().listPage(0, 50);
+    }
+
+    /**
+     * Users {@code user-0} to {@code user-<size-1>}, each member of a tenth of the groups derived from the token.
+     */
+    private static class GeneratedDirectoryClient implements DirectoryClient {
+
+        private final int userCount;
+        private final List<String> groupIds;
+
+        GeneratedDirectoryClient(int userCount, int roleCount) {
+            this.userCount = userCount;
+            this.groupIds = new ArrayList<>();
+            for (int i = 0; i < roleCount / 2; i++) {
+                groupIds.add("realm-role-" + i);
+            }
+        }
+
+        @Override
+        public List<User> fetchUsers() {
+            List<User> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                users.add(new OAuthUser("user-" + i, "First" + i, "Last" + i, "user-" + i + "@example.com"));
+            }
+            return users;
+        }
+
+        @Override
+        public List<Group> fetchGroups() {
+            List<Group> groups = new ArrayList<>(groupIds.size());
+            for (String id : groupIds) {
+                groups.add(new OAuthGroup(id, id, "oauth"));
+            }
+            return groups;
+        }
+
+        @Override
+        public Map<String, Set<String>> fetchMembers(Collection<Group> groups) {
+            Map<String, Set<String>> members = new HashMap<>();
+            for (Group group : groups) {
+                Set<String> groupMembers = new HashSet<>();
+                int offset = groupIds.indexOf(group.getId()) % 10;
+                for (int i = offset; i < userCount; i += 10) {
+                    groupMembers.add("user-" + i);
+                }
+                members.put(group.getId(), groupMembers);
+            }
+            return members;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.holunda.example.camunda.sso.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load driver for comparing the thread modes of the application ({@code application.threads}). A fixed number of simulated clients each
+ * send requests back to back for the given duration; the report lists the throughput, latency percentiles and errors. Run it against the same endpoint
+ * once with {@code platform} and once with {@code virtual} threads, with more clients than {@code server.tomcat.threads.max} and an endpoint that
+ * blocks, e.g. a camunda REST query, and compare where the throughput levels off and how the latencies grow with the number of clients.<br>
+ * <br>
+ * Arguments: {@code url [clients=200] [duration=30s] [warmup=5s]}. A bearer token for the request is read from the environment variable
+ * {@code LOAD_TOKEN}.
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: LoadDriver url [clients=200] [duration=30s] [warmup=5s]");
+            System.exit(1);
+        }
+        URI uri = URI.create(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Duration duration = args.length > 2 ? Arguments.parseDuration(args[2]) : Duration.ofSeconds(30);
+        Duration warmup = args.length > 3 ? Arguments.parseDuration(args[3]) : Duration.ofSeconds(5);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET();
+        String token = System.getenv("LOAD_TOKEN");
+        if (token != null && !token.isEmpty()) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        HttpClient httpClient = HttpClient.newBuilder()
+                                          .connectTimeout(Duration.ofSeconds(10))
+                                          .executor(Executors.newCachedThreadPool())
+                                          .build();
+
+        System.out.printf(Locale.ROOT, "%s with %d clients, %ds warmup, %ds measurement%n", uri, clients, warmup.toSeconds(), duration.toSeconds());
+        run(httpClient, request.build(), clients, warmup);
+        run(httpClient, request.build(), clients, duration).print("total", duration);
+        System.exit(0);
+    }
+
+    private static LoadResult run(HttpClient httpClient, HttpRequest request, int clients, Duration duration) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        // one slot per client, published to the main thread by the latch
+        long[][] latencies = new long[clients][];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            executor.execute(() -> {
+                long[] clientLatencies = new long[1024];
+                int count = 0;
+                try {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == clientLatencies.length) {
+                            clientLatencies = Arrays.copyOf(clientLatencies, count * 2);
+                        }
+                        clientLatencies[count++] = System.nanoTime() - start;
+                    }
+                } finally {
+                    latencies[client] = Arrays.copyOf(clientLatencies, count);
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return new LoadResult(Arrays.asList(latencies), errors.get());
+    }
+}
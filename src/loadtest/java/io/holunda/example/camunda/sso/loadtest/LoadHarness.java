@@ -0,0 +1,336 @@
+package io.holunda.example.camunda.sso.loadtest;
+
+import io.holunda.example.camunda.sso.CamundaSSOExampleApplication;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts the application under a mix of authenticated traffic against a {@link MockIdentityProvider}: REST API calls with bearer tokens
+ * ({@code rest}: {@code /rest/task}, {@code info}: {@code /public/rest/info}) and webapp users that log in via the OAuth2 code flow and then keep using
+ * their session ({@code app}: {@code /app/tasklist/default/} and {@code /api/admin/auth/user/default}). The scenario {@code opaque} calls
+ * {@code /rest/task} with opaque tokens, which requires {@code --application.introspection.enabled=true}. Every simulated client sends requests of one
+ * scenario back to back; the clients are split between the scenarios by the weights of {@code mix}. Bearer clients take a new token whenever the
+ * identity provider rotated its key, so rotations exercise the JWK set refresh of the application.<br>
+ * <br>
+ * By default the identity provider and the application are started in this JVM, the application with the H2 database and its web logging turned down.
+ * Arguments starting with {@code --} are passed to the application, e.g. {@code --application.threads=virtual}. To measure an application running in
+ * its own JVM, start it with the properties printed by {@link MockIdentityProvider#main} and pass {@code target} and {@code idp-port}.<br>
+ * <br>
+ * Arguments ({@code key=value}): {@code clients=100 duration=30s warmup=10s mix=rest:5,info:4,app:1 users=50 roles=20 rotate=0s token-ttl=5m
+ * target= idp-port=0 result=target/loadtest-result.json}. Per scenario, the report lists the throughput, latency percentiles and errors. It is also
+ * written as JSON with the current commit, so runs of different commits can be compared.
+ */
+public class LoadHarness {
+
+    private static final List<String> APP_PATHS = List.of("/app/tasklist/default/", "/api/admin/auth/user/default");
+
+    private final MockIdentityProvider identityProvider;
+    private final URI target;
+    private final int users;
+    private final Duration tokenTtl;
+    private final HttpClient bearerClient = HttpClient.newBuilder()
+                                                      .connectTimeout(Duration.ofSeconds(10))
+                                                      .followRedirects(HttpClient.Redirect.NEVER)
+                                                      .executor(Executors.newCachedThreadPool())
+                                                      .build();
+    private final AtomicLong logins = new AtomicLong();
+
+    LoadHarness(MockIdentityProvider identityProvider, URI target, int users, Duration tokenTtl) {
+        this.identityProvider = identityProvider;
+        this.target = target;
+        this.users = users;
+        this.tokenTtl = tokenTtl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> applicationArgs = new ArrayList<>();
+        List<String> harnessArgs = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? applicationArgs : harnessArgs).add(arg);
+        }
+        Arguments arguments = new Arguments(harnessArgs.toArray(new String[0]));
+        int clients = arguments.getInt("clients", 100);
+        Duration duration = arguments.getDuration("duration", Duration.ofSeconds(30));
+        Duration warmup = arguments.getDuration("warmup", Duration.ofSeconds(10));
+        Duration tokenTtl = arguments.getDuration("token-ttl", Duration.ofMinutes(5));
+        Map<String, Integer> mix = parseMix(arguments.get("mix", "rest:5,info:4,app:1"));
+
+        MockIdentityProvider identityProvider = new MockIdentityProvider(
+            arguments.getInt("idp-port", 0),
+            arguments.getInt("roles", 20),
+            tokenTtl,
+            arguments.getDuration("rotate", Duration.ZERO)
+        );
+        String target = arguments.get("target", "");
+        if (target.isEmpty()) {
+            target = startApplication(identityProvider, applicationArgs);
+        }
+        LoadHarness harness = new LoadHarness(identityProvider, URI.create(target), arguments.getInt("users", 50), tokenTtl);
+
+        System.out.printf(Locale.ROOT, "%s with %d clients (%s), %ds warmup, %ds measurement%n",
+            target, clients, mix, warmup.toSeconds(), duration.toSeconds());
+        harness.run(clients, mix, warmup);
+        long tokensBefore = identityProvider.getIssuedTokens();
+        long jwksBefore = identityProvider.getJwksRequests();
+        long introspectionsBefore = identityProvider.getIntrospections();
+        long rotationsBefore = identityProvider.getKeyGeneration();
+        long loginsBefore = harness.logins.get();
+        Map<String, LoadResult> results = harness.run(clients, mix, duration);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("commit", commit());
+        report.put("timestamp", Instant.now().toString());
+        report.put("clients", clients);
+        report.put("durationSeconds", duration.toSeconds());
+        report.put("mix", mix);
+        report.put("applicationArgs", applicationArgs);
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        results.forEach((scenario, result) -> {
+            result.print(scenario, duration);
+            scenarios.put(scenario, result.toJson(duration));
+        });
+        report.put("scenarios", scenarios);
+        Map<String, Object> identityProviderStats = new LinkedHashMap<>();
+        identityProviderStats.put("logins", harness.logins.get() - loginsBefore);
+        identityProviderStats.put("issuedTokens", identityProvider.getIssuedTokens() - tokensBefore);
+        identityProviderStats.put("jwksRequests", identityProvider.getJwksRequests() - jwksBefore);
+        identityProviderStats.put("introspections", identityProvider.getIntrospections() - introspectionsBefore);
+        identityProviderStats.put("keyRotations", identityProvider.getKeyGeneration() - rotationsBefore);
+        report.put("identityProvider", identityProviderStats);
+        System.out.println("identity provider: " + identityProviderStats);
+
+        Path resultFile = Path.of(arguments.get("result", "target/loadtest-result.json"));
+        if (resultFile.getParent() != null) {
+            Files.createDirectories(resultFile.getParent());
+        }
+        Files.writeString(resultFile, Json.write(report), StandardCharsets.UTF_8);
+        System.out.println("Result written to " + resultFile);
+        System.exit(0);
+    }
+
+    private Map<String, LoadResult> run(int clients, Map<String, Integer> mix, Duration duration) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        List<String> assignments = assign(clients, mix);
+        // one slot per client, published to the main thread by the latch
+        long[][] latencies = new long[clients][];
+        long[] errors = new long[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            String username = "user-" + (client % users);
+            Client scenario = "app".equals(assignments.get(client)) ? new SessionClient(username) : new BearerClient(assignments.get(client), username);
+            executor.execute(() -> {
+                long[] clientLatencies = new long[1024];
+                int count = 0;
+                try {
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        if (!scenario.send()) {
+                            errors[client]++;
+                            continue;
+                        }
+                        if (count == clientLatencies.length) {
+                            clientLatencies = Arrays.copyOf(clientLatencies, count * 2);
+                        }
+                        clientLatencies[count++] = System.nanoTime() - start;
+                    }
+                } finally {
+                    latencies[client] = Arrays.copyOf(clientLatencies, count);
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        Map<String, LoadResult> results = new LinkedHashMap<>();
+        for (String scenario : mix.keySet()) {
+            List<long[]> scenarioLatencies = new ArrayList<>();
+            long scenarioErrors = 0;
+            for (int client = 0; client < clients; client++) {
+                if (assignments.get(client).equals(scenario)) {
+                    scenarioLatencies.add(latencies[client]);
+                    scenarioErrors += errors[client];
+                }
+            }
+            results.put(scenario, new LoadResult(scenarioLatencies, scenarioErrors));
+        }
+        results.put("total", new LoadResult(Arrays.asList(latencies), Arrays.stream(errors).sum()));
+        return results;
+    }
+
+    // distributes the clients over the scenarios in proportion to their weights, interleaved so that every scenario gets a client early
+    private static List<String> assign(int clients, Map<String, Integer> mix) {
+        List<String> assignments = new ArrayList<>(clients);
+        Map<String, Integer> assigned = new LinkedHashMap<>();
+        for (int client = 0; client < clients; client++) {
+            String next = null;
+            double lowestShare = Double.MAX_VALUE;
+            for (Map.Entry<String, Integer> scenario : mix.entrySet()) {
+                double share = assigned.getOrDefault(scenario.getKey(), 0) / (double) scenario.getValue();
+                if (share < lowestShare) {
+                    lowestShare = share;
+                    next = scenario.getKey();
+                }
+            }
+            assigned.merge(next, 1, Integer::sum);
+            assignments.add(next);
+        }
+        return assignments;
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String scenario = parts[0];
+            if (!List.of("rest", "info", "app", "opaque").contains(scenario)) {
+                throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected rest, info, app or opaque");
+            }
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            if (weight > 0) {
+                weights.put(scenario, weight);
+            }
+        }
+        return weights;
+    }
+
+    private static String startApplication(MockIdentityProvider identityProvider, List<String> applicationArgs) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=" + port);
+        identityProvider.applicationProperties().forEach((key, value) -> args.add("--" + key + "=" + value));
+        // the request logging of application.yaml would dominate the measurement
+        args.add("--logging.level.org.springframework.web=INFO");
+        args.add("--logging.level.org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping=INFO");
+        // later arguments win, so the application arguments of the command line override the ones above
+        args.addAll(applicationArgs);
+        CamundaSSOExampleApplication.main(args.toArray(new String[0]));
+        return "http://localhost:" + port;
+    }
+
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String commit = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 ? commit : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private interface Client {
+
+        /**
+         * Sends the next request of the scenario, returns whether it succeeded.
+         */
+        boolean send();
+    }
+
+    // a REST API client sending a bearer token, takes a new token from the identity provider when the key was rotated or half of its lifetime passed
+    private class BearerClient implements Client {
+
+        private final HttpRequest.Builder request;
+        private final boolean opaque;
+        private final String username;
+        private String token;
+        private long tokenKeyGeneration;
+        private long tokenRenewal;
+
+        BearerClient(String scenario, String username) {
+            String path = scenario.equals("info") ? "/public/rest/info" : "/rest/task?maxResults=10";
+            this.request = HttpRequest.newBuilder(target.resolve(path)).timeout(Duration.ofSeconds(60)).GET();
+            this.opaque = scenario.equals("opaque");
+            this.username = username;
+        }
+
+        @Override
+        public boolean send() {
+            if (token == null || tokenKeyGeneration != identityProvider.getKeyGeneration() || System.nanoTime() - tokenRenewal > 0) {
+                tokenKeyGeneration = identityProvider.getKeyGeneration();
+                token = opaque ? identityProvider.opaqueToken(username) : identityProvider.accessToken(username);
+                tokenRenewal = System.nanoTime() + tokenTtl.toNanos() / 2;
+            }
+            try {
+                HttpResponse<Void> response = bearerClient.send(request.copy().header("Authorization", "Bearer " + token).build(),
+                    HttpResponse.BodyHandlers.discarding());
+                return response.statusCode() < 300;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    // a webapp user with its own cookies, logs in via the identity provider on the first request and whenever the session is gone
+    private class SessionClient implements Client {
+
+        private final HttpClient httpClient;
+        private int next;
+
+        SessionClient(String username) {
+            CookieManager cookies = new CookieManager();
+            // tells the identity provider which user to log in, see MockIdentityProvider#authorize
+            HttpCookie userCookie = new HttpCookie(MockIdentityProvider.USER_COOKIE, username);
+            userCookie.setPath("/");
+            userCookie.setVersion(0);
+            cookies.getCookieStore().add(URI.create(identityProvider.getBaseUrl()), userCookie);
+            this.httpClient = HttpClient.newBuilder()
+                                        .connectTimeout(Duration.ofSeconds(10))
+                                        .followRedirects(HttpClient.Redirect.ALWAYS)
+                                        .cookieHandler(cookies)
+                                        .build();
+        }
+
+        @Override
+        public boolean send() {
+            String path = APP_PATHS.get(next++ % APP_PATHS.size());
+            try {
+                HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(target.resolve(path)).timeout(Duration.ofSeconds(60)).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+                if (response.previousResponse().isPresent()) {
+                    logins.incrementAndGet();
+                }
+                return response.statusCode() < 400;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.holunda.example.camunda.sso.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Throughput, latency percentiles and errors of the requests of a measurement, shared by {@link LoadDriver} and {@link LoadHarness}.
+ */
+final class LoadResult {
+
+    private final long[] sortedLatencies;
+    private final long errors;
+
+    /**
+     * @param latencies the latencies of the successful requests in nanoseconds, one array per client.
+     */
+    LoadResult(Collection<long[]> latencies, long errors) {
+        this.sortedLatencies = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        this.errors = errors;
+    }
+
+    void print(String scenario, Duration duration) {
+        System.out.printf(Locale.ROOT, "%-6s requests: %d, errors: %d, throughput: %.1f/s", scenario, sortedLatencies.length, errors,
+            throughput(duration));
+        if (sortedLatencies.length > 0) {
+            System.out.printf(Locale.ROOT, ", latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                percentile(0.5), percentile(0.9), percentile(0.99), max());
+        }
+        System.out.println();
+    }
+
+    Map<String, Object> toJson(Duration duration) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("requests", sortedLatencies.length);
+        json.put("errors", errors);
+        json.put("throughput", throughput(duration));
+        if (sortedLatencies.length > 0) {
+            json.put("p50", percentile(0.5));
+            json.put("p90", percentile(0.9));
+            json.put("p99", percentile(0.99));
+            json.put("max", max());
+        }
+        return json;
+    }
+
+    private double throughput(Duration duration) {
+        return sortedLatencies.length / (double) duration.toSeconds();
+    }
+
+    // in milliseconds, by the nearest-rank method
+    private double percentile(double percentile) {
+        return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, Math.ceil(percentile * sortedLatencies.length) - 1)] / 1e6;
+    }
+
+    private double max() {
+        return sortedLatencies[sortedLatencies.length - 1] / 1e6;
+    }
+}
@@ -0,0 +1,594 @@
+package io.holunda.example.camunda.sso.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.HttpCookie;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for a Keycloak realm, so the application can be put under authentication load without a real identity provider. It serves the
+ * OpenID Connect discovery document, the JWK set, an authorization endpoint that logs in without a login page, the token endpoint (authorization code,
+ * password, client credentials and refresh token grants), the userinfo endpoint and the introspection endpoint for the opaque tokens of
+ * {@link #opaqueToken(String)}.<br>
+ * <br>
+ * Tokens are signed with RS256 and shaped like Keycloak's: realm roles in {@code realm_access}, client roles in {@code resource_access}, padded with
+ * {@code roleCount} generated roles. Every user gets the role required for the webapps. The user logged in by the authorization endpoint is taken from
+ * the {@code login_hint} parameter or the {@code mock_idp_user} cookie. With a key rotation interval, a new signing key is generated periodically; the
+ * JWK set keeps the previous key so that tokens issued before the rotation stay valid.<br>
+ * <br>
+ * Run standalone with {@code port=8090 [roles=20] [rotate=0s] [token-ttl=5m]} to get the configuration for an application started separately.
+ */
+public class MockIdentityProvider implements AutoCloseable {
+
+    public static final String REALM = "loadtest";
+    public static final String CLIENT_ID = "camunda";
+    public static final String CLIENT_SECRET = "loadtest-secret";
+    public static final String WEBAPP_ROLE = "camunda-user";
+    public static final String USER_COOKIE = "mock_idp_user";
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Pattern SUB_CLAIM = Pattern.compile("\"sub\":\"([^\"]*)\"");
+    private static final Pattern USERNAME_CLAIM = Pattern.compile("\"preferred_username\":\"([^\"]*)\"");
+    private static final String REFRESH_TOKEN_PREFIX = "refresh.";
+
+    private final HttpServer server;
+    private final String baseUrl;
+    private final String issuer;
+    private final int roleCount;
+    private final Duration tokenTtl;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mock-idp-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the current key first, followed by the previous one
+    private volatile List<SigningKey> keys;
+    private final Map<String, Grant> codes = new ConcurrentHashMap<>();
+    // the claims of the issued opaque tokens, removed when they expire
+    private final Map<String, Map<String, Object>> opaqueTokens = new ConcurrentHashMap<>();
+    private final AtomicLong keyGeneration = new AtomicLong();
+    private final AtomicLong issuedTokens = new AtomicLong();
+    private final AtomicLong jwksRequests = new AtomicLong();
+    private final AtomicLong introspections = new AtomicLong();
+
+    /**
+     * @param port        the port to listen on, {@code 0} for any free port.
+     * @param roleCount   the number of generated realm and client roles per token, in addition to the default roles.
+     * @param tokenTtl    the lifetime of the issued tokens.
+     * @param keyRotation the interval in which the signing key is replaced, {@link Duration#ZERO} to keep the first key.
+     */
+    public MockIdentityProvider(int port, int roleCount, Duration tokenTtl, Duration keyRotation) throws IOException {
+        this.roleCount = roleCount;
+        this.tokenTtl = tokenTtl;
+        this.keys = List.of(newKey());
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.baseUrl = "http://localhost:" + server.getAddress().getPort();
+        this.issuer = baseUrl + "/realms/" + REALM;
+        server.createContext("/realms/" + REALM + "/", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())));
+        server.start();
+        scheduler.scheduleAtFixedRate(this::removeExpiredOpaqueTokens, 1, 1, TimeUnit.MINUTES);
+        if (!keyRotation.isZero()) {
+            scheduler.scheduleAtFixedRate(this::rotateKey, keyRotation.toMillis(), keyRotation.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        MockIdentityProvider identityProvider = new MockIdentityProvider(
+            arguments.getInt("port", 8090),
+            arguments.getInt("roles", 20),
+            arguments.getDuration("token-ttl", Duration.ofMinutes(5)),
+            arguments.getDuration("rotate", Duration.ZERO)
+        );
+        System.out.println("Issuer " + identityProvider.getIssuer() + ", start the application with:");
+        identityProvider.applicationProperties().forEach((key, value) -> System.out.println("  " + key + "=" + value));
+        System.out.println("Access token of user-0 (export as LOAD_TOKEN):");
+        System.out.println(identityProvider.accessToken("user-0"));
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * @return the properties that configure the application to use this identity provider.
+     */
+    public Map<String, String> applicationProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("KEYCLOAK_BASE_URL", baseUrl);
+        properties.put("KEYCLOAK_REALM", REALM);
+        properties.put("KEYCLOAK_CLIENT_ID", CLIENT_ID);
+        properties.put("KEYCLOAK_CLIENT_SECRET", CLIENT_SECRET);
+        properties.put("WEBAPP_REQUIRED_ROLE", WEBAPP_ROLE);
+        return properties;
+    }
+
+    /**
+     * @return a signed access token of the given user, as issued by the token endpoint.
+     */
+    public String accessToken(String username) {
+        return sign(accessTokenClaims(username, UUID.randomUUID().toString()));
+    }
+
+    /**
+     * @return an opaque access token of the given user, which the application has to introspect. Its introspection result has the claims of
+     * {@link #accessToken(String)}.
+     */
+    public String opaqueToken(String username) {
+        String token = UUID.randomUUID().toString() + UUID.randomUUID();
+        opaqueTokens.put(token, accessTokenClaims(username, UUID.randomUUID().toString()));
+        issuedTokens.incrementAndGet();
+        return token;
+    }
+
+    /**
+     * @return the number of key rotations so far, changes whenever tokens are signed with a new key.
+     */
+    public long getKeyGeneration() {
+        return keyGeneration.get();
+    }
+
+    public long getIssuedTokens() {
+        return issuedTokens.get();
+    }
+
+    public long getJwksRequests() {
+        return jwksRequests.get();
+    }
+
+    public long getIntrospections() {
+        return introspections.get();
+    }
+
+    /**
+     * Signs all further tokens with a new key. The JWK set publishes the new and the previous key.
+     */
+    public void rotateKey() {
+        SigningKey key = newKey();
+        keys = List.of(key, keys.get(0));
+        keyGeneration.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath().substring(("/realms/" + REALM).length());
+            switch (path) {
+                case "/.well-known/openid-configuration":
+                    respondJson(exchange, 200, discovery());
+                    break;
+                case "/protocol/openid-connect/certs":
+                    jwksRequests.incrementAndGet();
+                    respondJson(exchange, 200, jwks());
+                    break;
+                case "/protocol/openid-connect/auth":
+                    authorize(exchange);
+                    break;
+                case "/protocol/openid-connect/token":
+                    token(exchange);
+                    break;
+                case "/protocol/openid-connect/token/introspect":
+                    introspect(exchange);
+                    break;
+                case "/protocol/openid-connect/userinfo":
+                    userInfo(exchange);
+                    break;
+                case "/protocol/openid-connect/logout":
+                    logout(exchange);
+                    break;
+                default:
+                    respondJson(exchange, 404, Map.of("error", "not_found"));
+            }
+        } catch (RuntimeException e) {
+            respondJson(exchange, 500, Map.of("error", "server_error", "error_description", String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Map<String, Object> discovery() {
+        String endpoints = issuer + "/protocol/openid-connect";
+        Map<String, Object> discovery = new LinkedHashMap<>();
+        discovery.put("issuer", issuer);
+        discovery.put("authorization_endpoint", endpoints + "/auth");
+        discovery.put("token_endpoint", endpoints + "/token");
+        discovery.put("userinfo_endpoint", endpoints + "/userinfo");
+        discovery.put("end_session_endpoint", endpoints + "/logout");
+        discovery.put("jwks_uri", endpoints + "/certs");
+        discovery.put("introspection_endpoint", endpoints + "/token/introspect");
+        discovery.put("grant_types_supported", List.of("authorization_code", "refresh_token", "password", "client_credentials"));
+        discovery.put("response_types_supported", List.of("code"));
+        discovery.put("subject_types_supported", List.of("public"));
+        discovery.put("id_token_signing_alg_values_supported", List.of("RS256"));
+        discovery.put("token_endpoint_auth_methods_supported", List.of("client_secret_basic", "client_secret_post"));
+        discovery.put("scopes_supported", List.of("openid", "profile", "email"));
+        discovery.put("claims_supported", List.of("sub", "iss", "name", "given_name", "family_name", "preferred_username", "email"));
+        return discovery;
+    }
+
+    private Map<String, Object> jwks() {
+        List<Object> jwks = new ArrayList<>();
+        for (SigningKey key : keys) {
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kid", key.id);
+            jwk.put("kty", "RSA");
+            jwk.put("alg", "RS256");
+            jwk.put("use", "sig");
+            jwk.put("n", unsigned(key.publicKey.getModulus()));
+            jwk.put("e", unsigned(key.publicKey.getPublicExponent()));
+            jwks.add(jwk);
+        }
+        return Map.of("keys", jwks);
+    }
+
+    // logs in the user without a login page, like a browser that still has an SSO session
+    private void authorize(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parse(exchange.getRequestURI().getRawQuery());
+        String redirectUri = parameters.get("redirect_uri");
+        if (!CLIENT_ID.equals(parameters.get("client_id")) || redirectUri == null || !"code".equals(parameters.get("response_type"))) {
+            respondJson(exchange, 400, Map.of("error", "invalid_request"));
+            return;
+        }
+        String username = parameters.getOrDefault("login_hint", userCookie(exchange));
+        String code = UUID.randomUUID().toString();
+        codes.put(code, new Grant(username, parameters.get("nonce"), redirectUri));
+
+        StringBuilder location = new StringBuilder(redirectUri).append(redirectUri.contains("?") ? '&' : '?');
+        if (parameters.containsKey("state")) {
+            location.append("state=").append(encode(parameters.get("state"))).append('&');
+        }
+        location.append("session_state=").append(UUID.randomUUID()).append("&code=").append(code);
+        exchange.getResponseHeaders().set("Location", location.toString());
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    private void token(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respondJson(exchange, 405, Map.of("error", "invalid_request"));
+            return;
+        }
+        Map<String, String> parameters = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (!isClientAuthenticated(exchange, parameters)) {
+            respondJson(exchange, 401, Map.of("error", "invalid_client"));
+            return;
+        }
+
+        String grantType = parameters.getOrDefault("grant_type", "");
+        String username;
+        String nonce = null;
+        boolean openId = parameters.getOrDefault("scope", "").contains("openid");
+        switch (grantType) {
+            case "authorization_code":
+                Grant grant = codes.remove(parameters.getOrDefault("code", ""));
+                if (grant == null || !grant.redirectUri.equals(parameters.get("redirect_uri"))) {
+                    respondJson(exchange, 400, Map.of("error", "invalid_grant"));
+                    return;
+                }
+                username = grant.username;
+                nonce = grant.nonce;
+                openId = true;
+                break;
+            case "password":
+                username = parameters.get("username");
+                break;
+            case "client_credentials":
+                username = "service-account-" + CLIENT_ID;
+                break;
+            case "refresh_token":
+                String refreshToken = parameters.getOrDefault("refresh_token", "");
+                if (!refreshToken.startsWith(REFRESH_TOKEN_PREFIX)) {
+                    respondJson(exchange, 400, Map.of("error", "invalid_grant"));
+                    return;
+                }
+                username = new String(Base64.getUrlDecoder().decode(refreshToken.substring(REFRESH_TOKEN_PREFIX.length())), StandardCharsets.UTF_8);
+                openId = true;
+                break;
+            default:
+                respondJson(exchange, 400, Map.of("error", "unsupported_grant_type"));
+                return;
+        }
+        if (username == null || username.isEmpty()) {
+            respondJson(exchange, 400, Map.of("error", "invalid_grant"));
+            return;
+        }
+
+        String sessionState = UUID.randomUUID().toString();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", sign(accessTokenClaims(username, sessionState)));
+        response.put("expires_in", tokenTtl.toSeconds());
+        response.put("refresh_expires_in", tokenTtl.toSeconds() * 6);
+        response.put("refresh_token", REFRESH_TOKEN_PREFIX + BASE64.encodeToString(username.getBytes(StandardCharsets.UTF_8)));
+        response.put("token_type", "Bearer");
+        if (openId) {
+            response.put("id_token", sign(idTokenClaims(username, nonce, sessionState)));
+        }
+        response.put("not-before-policy", 0);
+        response.put("session_state", sessionState);
+        response.put("scope", "openid profile email");
+        respondJson(exchange, 200, response);
+    }
+
+    // RFC 7662, like keycloak the response of an active token holds all claims of the access token
+    private void introspect(HttpExchange exchange) throws IOException {
+        introspections.incrementAndGet();
+        Map<String, String> parameters = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        if (!isClientAuthenticated(exchange, parameters)) {
+            respondJson(exchange, 401, Map.of("error", "invalid_client"));
+            return;
+        }
+        Map<String, Object> claims = opaqueTokens.get(parameters.getOrDefault("token", ""));
+        if (claims == null || ((Number) claims.get("exp")).longValue() < Instant.now().getEpochSecond()) {
+            respondJson(exchange, 200, Map.of("active", false));
+            return;
+        }
+        Map<String, Object> response = new LinkedHashMap<>(claims);
+        response.put("client_id", CLIENT_ID);
+        response.put("username", claims.get("preferred_username"));
+        response.put("token_type", "Bearer");
+        response.put("active", true);
+        respondJson(exchange, 200, response);
+    }
+
+    private void removeExpiredOpaqueTokens() {
+        long now = Instant.now().getEpochSecond();
+        opaqueTokens.values().removeIf(claims -> ((Number) claims.get("exp")).longValue() < now);
+    }
+
+    private void userInfo(HttpExchange exchange) throws IOException {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        String[] parts = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7).split("\\.") : new String[0];
+        if (parts.length != 3) {
+            respondJson(exchange, 401, Map.of("error", "invalid_token"));
+            return;
+        }
+        // the token was issued by this provider, so its payload is trusted without verifying the signature
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        Matcher username = USERNAME_CLAIM.matcher(payload);
+        Matcher sub = SUB_CLAIM.matcher(payload);
+        if (!username.find() || !sub.find()) {
+            respondJson(exchange, 401, Map.of("error", "invalid_token"));
+            return;
+        }
+        Map<String, Object> userInfo = new LinkedHashMap<>();
+        userInfo.put("sub", sub.group(1));
+        userInfo.putAll(profile(username.group(1)));
+        respondJson(exchange, 200, userInfo);
+    }
+
+    private void logout(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parse(exchange.getRequestURI().getRawQuery());
+        String redirectUri = parameters.getOrDefault("post_logout_redirect_uri", parameters.get("redirect_uri"));
+        if (redirectUri != null) {
+            exchange.getResponseHeaders().set("Location", redirectUri);
+            exchange.sendResponseHeaders(302, -1);
+        } else {
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    private Map<String, Object> accessTokenClaims(String username, String sessionState) {
+        Instant now = Instant.now();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("exp", now.plus(tokenTtl).getEpochSecond());
+        claims.put("iat", now.getEpochSecond());
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("iss", issuer);
+        claims.put("aud", "account");
+        claims.put("sub", subject(username));
+        claims.put("typ", "Bearer");
+        claims.put("azp", CLIENT_ID);
+        claims.put("session_state", sessionState);
+        claims.put("acr", "1");
+        claims.put("allowed-origins", List.of("*"));
+
+        List<String> realmRoles = new ArrayList<>(List.of("offline_access", "uma_authorization", "default-roles-" + REALM));
+        List<String> clientRoles = new ArrayList<>(List.of(WEBAPP_ROLE));
+        for (int i = 0; i < roleCount; i++) {
+            (i % 2 == 0 ? realmRoles : clientRoles).add((i % 2 == 0 ? "realm-role-" : "client-role-") + i / 2);
+        }
+        claims.put("realm_access", Map.of("roles", realmRoles));
+        Map<String, Object> resourceAccess = new LinkedHashMap<>();
+        resourceAccess.put(CLIENT_ID, Map.of("roles", clientRoles));
+        resourceAccess.put("account", Map.of("roles", List.of("manage-account", "manage-account-links", "view-profile")));
+        claims.put("resource_access", resourceAccess);
+
+        claims.put("scope", "openid profile email");
+        claims.put("sid", sessionState);
+        claims.put("email_verified", true);
+        claims.putAll(profile(username));
+        return claims;
+    }
+
+    private Map<String, Object> idTokenClaims(String username, String nonce, String sessionState) {
+        Instant now = Instant.now();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("exp", now.plus(tokenTtl).getEpochSecond());
+        claims.put("iat", now.getEpochSecond());
+        claims.put("auth_time", now.getEpochSecond());
+        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("iss", issuer);
+        claims.put("aud", CLIENT_ID);
+        claims.put("sub", subject(username));
+        claims.put("typ", "ID");
+        claims.put("azp", CLIENT_ID);
+        if (nonce != null) {
+            claims.put("nonce", nonce);
+        }
+        claims.put("session_state", sessionState);
+        claims.put("sid", sessionState);
+        claims.putAll(profile(username));
+        return claims;
+    }
+
+    private static Map<String, Object> profile(String username) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("name", "Load " + username);
+        profile.put("preferred_username", username);
+        profile.put("given_name", "Load");
+        profile.put("family_name", username);
+        profile.put("email", username + "@loadtest.example.com");
+        return profile;
+    }
+
+    // stable per username, like the user ids of keycloak
+    private static String subject(String username) {
+        return UUID.nameUUIDFromBytes(username.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private String sign(Map<String, Object> claims) {
+        SigningKey key = keys.get(0);
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("alg", "RS256");
+        header.put("typ", "JWT");
+        header.put("kid", key.id);
+        String signingInput = BASE64.encodeToString(Json.write(header).getBytes(StandardCharsets.UTF_8))
+            + "." + BASE64.encodeToString(Json.write(claims).getBytes(StandardCharsets.UTF_8));
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(key.privateKey);
+            signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+            issuedTokens.incrementAndGet();
+            return signingInput + "." + BASE64.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isClientAuthenticated(HttpExchange exchange, Map<String, String> parameters) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization != null && authorization.startsWith("Basic ")) {
+            String credentials = new String(Base64.getDecoder().decode(authorization.substring(6)), StandardCharsets.UTF_8);
+            // client_secret_basic url-encodes id and secret, see RFC 6749 section 2.3.1
+            int separator = credentials.indexOf(':');
+            return separator > 0
+                && CLIENT_ID.equals(URLDecoder.decode(credentials.substring(0, separator), StandardCharsets.UTF_8))
+                && CLIENT_SECRET.equals(URLDecoder.decode(credentials.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return CLIENT_ID.equals(parameters.get("client_id")) && CLIENT_SECRET.equals(parameters.get("client_secret"));
+    }
+
+    private static String userCookie(HttpExchange exchange) {
+        List<String> cookieHeaders = exchange.getRequestHeaders().getOrDefault("Cookie", List.of());
+        for (String cookieHeader : cookieHeaders) {
+            for (String cookie : cookieHeader.split(";")) {
+                List<HttpCookie> parsed = HttpCookie.parse(cookie.trim());
+                if (!parsed.isEmpty() && USER_COOKIE.equals(parsed.get(0).getName())) {
+                    return parsed.get(0).getValue();
+                }
+            }
+        }
+        return "user-0";
+    }
+
+    private static Map<String, String> parse(String form) {
+        Map<String, String> parameters = new HashMap<>();
+        if (form == null || form.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : form.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // BigInteger adds a leading zero byte for the sign, JWKs encode the unsigned value
+        return BASE64.encodeToString(bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes);
+    }
+
+    private static void respondJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private static SigningKey newKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair keyPair = generator.generateKeyPair();
+            return new SigningKey(UUID.randomUUID().toString(), keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class SigningKey {
+
+        private final String id;
+        private final PrivateKey privateKey;
+        private final RSAPublicKey publicKey;
+
+        SigningKey(String id, PrivateKey privateKey, RSAPublicKey publicKey) {
+            this.id = id;
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+    }
+
+    private static class Grant {
+
+        private final String username;
+        private final String nonce;
+        private final String redirectUri;
+
+        Grant(String username, String nonce, String redirectUri) {
+            this.username = username;
+            this.nonce = nonce;
+            this.redirectUri = redirectUri;
+        }
+    }
+}
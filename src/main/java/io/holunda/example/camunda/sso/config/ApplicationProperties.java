@@ -2,19 +2,66 @@ package io.holunda.example.camunda.sso.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
 @ConfigurationProperties(prefix = "application")
 @ConstructorBinding
 public class ApplicationProperties {
     private final String webAppRole;
     private final String registration;
+    private final JwtCache jwtCache;
+    private final Jwks jwks;
+    private final Directory directory;
+    private final String tenantClaim;
+    private final Metrics metrics;
+    private final Session session;
+    private final AuthorizationCache authorizationCache;
+    private final GroupMapping groupMapping;
+    private final ThreadMode threads;
+    private final UserCache userCache;
+    private final StaticResources staticResources;
+    private final Introspection introspection;
+    private final Revocation revocation;
+    private final Issuers issuers;
 
     public ApplicationProperties(
         String webAppRole,
-        String registration
+        String registration,
+        @DefaultValue JwtCache jwtCache,
+        @DefaultValue Jwks jwks,
+        @DefaultValue Directory directory,
+        String tenantClaim,
+        @DefaultValue Metrics metrics,
+        @DefaultValue Session session,
+        @DefaultValue AuthorizationCache authorizationCache,
+        @DefaultValue GroupMapping groupMapping,
+        @DefaultValue("platform") ThreadMode threads,
+        @DefaultValue UserCache userCache,
+        @DefaultValue StaticResources staticResources,
+        @DefaultValue Introspection introspection,
+        @DefaultValue Revocation revocation,
+        @DefaultValue Issuers issuers
     ) {
         this.registration = registration;
         this.webAppRole = webAppRole;
+        this.jwtCache = jwtCache;
+        this.jwks = jwks;
+        this.directory = directory;
+        this.tenantClaim = tenantClaim;
+        this.metrics = metrics;
+        this.session = session;
+        this.authorizationCache = authorizationCache;
+        this.groupMapping = groupMapping;
+        this.threads = threads;
+        this.userCache = userCache;
+        this.staticResources = staticResources;
+        this.introspection = introspection;
+        this.revocation = revocation;
+        this.issuers = issuers;
     }
 
     public String getWebAppRole() {
@@ -24,4 +71,753 @@ public class ApplicationProperties {
     public String getRegistration() {
         return registration;
     }
+
+    public JwtCache getJwtCache() {
+        return jwtCache;
+    }
+
+    public Jwks getJwks() {
+        return jwks;
+    }
+
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Name of the token claim holding the ids of the user's tenants. If not set, users are not member of any tenant.
+     */
+    public String getTenantClaim() {
+        return tenantClaim;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public AuthorizationCache getAuthorizationCache() {
+        return authorizationCache;
+    }
+
+    public GroupMapping getGroupMapping() {
+        return groupMapping;
+    }
+
+    public ThreadMode getThreads() {
+        return threads;
+    }
+
+    public UserCache getUserCache() {
+        return userCache;
+    }
+
+    public StaticResources getStaticResources() {
+        return staticResources;
+    }
+
+    public Introspection getIntrospection() {
+        return introspection;
+    }
+
+    public Revocation getRevocation() {
+        return revocation;
+    }
+
+    public Issuers getIssuers() {
+        return issuers;
+    }
+
+    /**
+     * The threads the embedded Tomcat serves requests on.
+     */
+    public enum ThreadMode {
+        /**
+         * Tomcat's thread pool, see {@code server.tomcat.threads.max}.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread per request, see {@code VirtualThreadConfiguration}. Requires Java 21.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Where the login state of the camunda webapps is kept.
+     */
+    public enum SessionMode {
+        /**
+         * In the servlet {@code HttpSession}, which requires sticky sessions when running more than one node.
+         */
+        HTTP_SESSION,
+        /**
+         * In an encrypted cookie, the authentication is rebuilt on every request. No server side session state is kept, so any node can serve any
+         * request.
+         */
+        STATELESS,
+        /**
+         * In a session store shared by all nodes, with a near cache on every node. Any node can serve any request.
+         */
+        CLUSTERED
+    }
+
+    /**
+     * Cache of verified access tokens used by the resource server, see {@code CachingJwtAuthenticationManager}.
+     */
+    public static class JwtCache {
+        private final boolean enabled;
+        private final long maximumSize;
+        private final Duration maximumTtl;
+
+        public JwtCache(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("5m") Duration maximumTtl
+        ) {
+            this.enabled = enabled;
+            this.maximumSize = maximumSize;
+            this.maximumTtl = maximumTtl;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * Upper bound for the time a token stays cached, also used for tokens without an {@code exp} claim.
+         */
+        public Duration getMaximumTtl() {
+            return maximumTtl;
+        }
+    }
+
+    /**
+     * Introspection of opaque access tokens by the resource server, see {@code CachingOpaqueTokenAuthenticationManager}.
+     */
+    public static class Introspection {
+        private final boolean enabled;
+        private final String uri;
+        private final String clientId;
+        private final String clientSecret;
+        private final long maximumSize;
+        private final Duration maximumTtl;
+        private final Duration timeout;
+
+        public Introspection(
+            @DefaultValue("false") boolean enabled,
+            String uri,
+            String clientId,
+            String clientSecret,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("5m") Duration maximumTtl,
+            @DefaultValue("5s") Duration timeout
+        ) {
+            this.enabled = enabled;
+            this.uri = uri;
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+            this.maximumSize = maximumSize;
+            this.maximumTtl = maximumTtl;
+            this.timeout = timeout;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * The introspection endpoint, defaults to Keycloak's endpoint below the issuer of the registration.
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * The client authenticating at the introspection endpoint, defaults to the client of the registration.
+         */
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getClientSecret() {
+            return clientSecret;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * Upper bound for the time an introspection result stays cached, also used for tokens without an {@code exp} claim. A token revoked at the
+         * identity provider is accepted for at most this duration.
+         */
+        public Duration getMaximumTtl() {
+            return maximumTtl;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+    }
+
+    /**
+     * Identity providers (e.g. Keycloak realms) trusted besides the one of the registration, see {@code IssuerRegistry}.
+     */
+    public static class Issuers {
+        private final List<Issuer> realms;
+        private final String trustedPrefix;
+        private final GroupMapping roleMapping;
+        private final int maximumDiscovered;
+        private final int discoveryAttemptsPerMinute;
+
+        public Issuers(
+            List<Issuer> realms,
+            String trustedPrefix,
+            @DefaultValue GroupMapping roleMapping,
+            @DefaultValue("100") int maximumDiscovered,
+            @DefaultValue("10") int discoveryAttemptsPerMinute
+        ) {
+            this.realms = realms != null ? List.copyOf(realms) : List.of();
+            this.trustedPrefix = trustedPrefix;
+            this.roleMapping = roleMapping;
+            this.maximumDiscovered = maximumDiscovered;
+            this.discoveryAttemptsPerMinute = discoveryAttemptsPerMinute;
+        }
+
+        /**
+         * Issuers known upfront, each with its own role mapping and optionally a client registration for the login to the webapps.
+         */
+        public List<Issuer> getRealms() {
+            return realms;
+        }
+
+        /**
+         * Tokens of any issuer below this URI are accepted as well, e.g. {@code https://keycloak/realms/} for all realms of a Keycloak. Such issuers
+         * are set up on their first token, so realms can be added without a restart.
+         */
+        public String getTrustedPrefix() {
+            return trustedPrefix;
+        }
+
+        /**
+         * The role mapping of issuers below the trusted prefix.
+         */
+        public GroupMapping getRoleMapping() {
+            return roleMapping;
+        }
+
+        /**
+         * Upper bound for the issuers set up below the trusted prefix, protects against tokens with made-up issuers.
+         */
+        public int getMaximumDiscovered() {
+            return maximumDiscovered;
+        }
+
+        /**
+         * Upper bound for the attempts to set up an issuer below the trusted prefix, successful or not, per minute and node.
+         */
+        public int getDiscoveryAttemptsPerMinute() {
+            return discoveryAttemptsPerMinute;
+        }
+    }
+
+    /**
+     * An issuer known upfront, see {@link Issuers#getRealms()}.
+     */
+    public static class Issuer {
+        private final String uri;
+        private final String registration;
+        private final String jwkSetUri;
+        private final GroupMapping roleMapping;
+
+        public Issuer(String uri, String registration, String jwkSetUri, @DefaultValue GroupMapping roleMapping) {
+            this.uri = uri;
+            this.registration = registration;
+            this.jwkSetUri = jwkSetUri;
+            this.roleMapping = roleMapping;
+        }
+
+        /**
+         * The {@code iss} claim of the tokens, defaults to the issuer of the registration.
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * The client registration for the login of the webapps with this issuer, if any. See {@code spring.security.oauth2.client.registration}.
+         */
+        public String getRegistration() {
+            return registration;
+        }
+
+        /**
+         * Defaults to the JWK set of the registration, or to Keycloak's certificate endpoint below the issuer.
+         */
+        public String getJwkSetUri() {
+            return jwkSetUri;
+        }
+
+        /**
+         * Renames the roles of this issuer's tokens before they become authorities, e.g. to the client and role names of {@code web-app-role}. Same
+         * format as {@code application.group-mapping}.
+         */
+        public GroupMapping getRoleMapping() {
+            return roleMapping;
+        }
+    }
+
+    /**
+     * Revocation of tokens, sessions and users on all nodes, see {@code RevocationList}.
+     */
+    public static class Revocation {
+        private final boolean enabled;
+        private final Duration pollInterval;
+        private final Duration retention;
+        private final int expectedRevocations;
+        private final String adminRole;
+        private final boolean initializeSchema;
+
+        public Revocation(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("1s") Duration pollInterval,
+            @DefaultValue("1d") Duration retention,
+            @DefaultValue("10000") int expectedRevocations,
+            String adminRole,
+            @DefaultValue("true") boolean initializeSchema
+        ) {
+            this.enabled = enabled;
+            this.pollInterval = pollInterval;
+            this.retention = retention;
+            this.expectedRevocations = expectedRevocations;
+            this.adminRole = adminRole;
+            this.initializeSchema = initializeSchema;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Interval in which every node polls the database for revocations made on other nodes, the maximum time until a revocation is in effect
+         * cluster-wide.
+         */
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        /**
+         * How long a revocation is kept. Must be longer than the lifetime of the access tokens and the webapp sessions it should end.
+         */
+        public Duration getRetention() {
+            return retention;
+        }
+
+        /**
+         * The number of revocations within the retention the in-memory filter is sized for. It grows if there are more.
+         */
+        public int getExpectedRevocations() {
+            return expectedRevocations;
+        }
+
+        /**
+         * The role required to revoke via the REST API. If not set, revocations are only accepted by back-channel logout from the identity provider.
+         */
+        public String getAdminRole() {
+            return adminRole;
+        }
+
+        /**
+         * Whether to create the table {@code SSO_REVOCATION} on startup if it doesn't exist.
+         */
+        public boolean isInitializeSchema() {
+            return initializeSchema;
+        }
+    }
+
+    /**
+     * Caching of the static resources of the camunda webapps, see {@code StaticResourceCacheFilter}.
+     */
+    public static class StaticResources {
+        private final Duration maxAge;
+
+        public StaticResources(@DefaultValue("1d") Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+
+        /**
+         * How long browsers may use a static resource before revalidating it with its ETag.
+         */
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+    }
+
+    /**
+     * Users seen by this node and ids that couldn't be resolved, see {@code KnownUsers}.
+     */
+    public static class UserCache {
+        private final long maximumSize;
+        private final Duration timeToLive;
+        private final Duration unknownTimeToLive;
+
+        public UserCache(
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("12h") Duration timeToLive,
+            @DefaultValue("1m") Duration unknownTimeToLive
+        ) {
+            this.maximumSize = maximumSize;
+            this.timeToLive = timeToLive;
+            this.unknownTimeToLive = unknownTimeToLive;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * How long a user is remembered after its last login or token on this node.
+         */
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        /**
+         * How long a user id that couldn't be resolved is answered as unknown without looking it up again.
+         */
+        public Duration getUnknownTimeToLive() {
+            return unknownTimeToLive;
+        }
+    }
+
+    /**
+     * Which roles become camunda groups, see {@code RoleMapper}. Without any rules and clients, every role becomes a group of the same name.
+     */
+    public static class GroupMapping {
+        private final Set<String> clients;
+        private final List<GroupMappingRule> rules;
+        private final boolean keepUnmapped;
+
+        public GroupMapping(
+            Set<String> clients,
+            List<GroupMappingRule> rules,
+            @DefaultValue("true") boolean keepUnmapped
+        ) {
+            this.clients = clients != null ? Set.copyOf(clients) : Set.of();
+            this.rules = rules != null ? List.copyOf(rules) : List.of();
+            this.keepUnmapped = keepUnmapped;
+        }
+
+        /**
+         * The clients whose client roles are considered. If empty, the roles of all clients are.
+         */
+        public Set<String> getClients() {
+            return clients;
+        }
+
+        /**
+         * The rules in the order they are tried, the first matching rule decides.
+         */
+        public List<GroupMappingRule> getRules() {
+            return rules;
+        }
+
+        /**
+         * Whether roles matched by no rule become groups of the same name.
+         */
+        public boolean isKeepUnmapped() {
+            return keepUnmapped;
+        }
+    }
+
+    public static class GroupMappingRule {
+        private final String roles;
+        private final String group;
+        private final boolean exclude;
+
+        public GroupMappingRule(String roles, String group, @DefaultValue("false") boolean exclude) {
+            this.roles = roles;
+            this.group = group;
+            this.exclude = exclude;
+        }
+
+        /**
+         * Regular expression matching the whole role, client roles as {@code client:role}.
+         */
+        public String getRoles() {
+            return roles;
+        }
+
+        /**
+         * The group the matched roles are mapped to, may refer to capturing groups of {@link #getRoles() roles} as {@code $1}. If not set, the group
+         * is named like the role.
+         */
+        public String getGroup() {
+            return group;
+        }
+
+        /**
+         * Whether the matched roles don't become groups at all.
+         */
+        public boolean isExclude() {
+            return exclude;
+        }
+    }
+
+    /**
+     * Cache of the authorization decisions of the process engine, see {@code AuthorizationDecisionCache}.
+     */
+    public static class AuthorizationCache {
+        private final boolean enabled;
+        private final long maximumSize;
+        private final Duration timeToLive;
+
+        public AuthorizationCache(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("30s") Duration timeToLive
+        ) {
+            this.enabled = enabled;
+            this.maximumSize = maximumSize;
+            this.timeToLive = timeToLive;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * Upper bound for the time a decision stays cached. Changes made through the engine of this node evict the cache immediately, changes made by
+         * other nodes only after this duration.
+         */
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+    }
+
+    /**
+     * The JWK set shared by all JWT decoders, see {@code SharedJwkSource}.
+     */
+    public static class Jwks {
+        private final String uri;
+        private final Duration timeToLive;
+        private final Duration refreshAhead;
+        private final Duration minimumRefreshInterval;
+        private final Duration timeout;
+        private final Duration maximumWait;
+
+        public Jwks(
+            String uri,
+            @DefaultValue("5m") Duration timeToLive,
+            @DefaultValue("30s") Duration refreshAhead,
+            @DefaultValue("30s") Duration minimumRefreshInterval,
+            @DefaultValue("5s") Duration timeout,
+            Duration maximumWait
+        ) {
+            this.uri = uri;
+            this.timeToLive = timeToLive;
+            this.refreshAhead = refreshAhead;
+            this.minimumRefreshInterval = minimumRefreshInterval;
+            this.timeout = timeout;
+            this.maximumWait = maximumWait;
+        }
+
+        /**
+         * Overrides the JWK set URI discovered from the registration's issuer, e.g. to point to a local stand-in server.
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public Duration getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public Duration getMinimumRefreshInterval() {
+            return minimumRefreshInterval;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * How long a request with a token signed by an unknown key waits for the key set to be fetched before the token is rejected. If not set, it
+         * waits for the fetch to complete or time out.
+         */
+        public Duration getMaximumWait() {
+            return maximumWait;
+        }
+    }
+
+    /**
+     * Directory of all users and groups of the identity provider, see {@code IdentityDirectory}.
+     */
+    public static class Directory {
+        private final boolean enabled;
+        private final String adminUri;
+        private final Duration refreshInterval;
+        private final int pageSize;
+        private final Duration timeout;
+
+        public Directory(
+            @DefaultValue("false") boolean enabled,
+            String adminUri,
+            @DefaultValue("5m") Duration refreshInterval,
+            @DefaultValue("500") int pageSize,
+            @DefaultValue("10s") Duration timeout
+        ) {
+            this.enabled = enabled;
+            this.adminUri = adminUri;
+            this.refreshInterval = refreshInterval;
+            this.pageSize = pageSize;
+            this.timeout = timeout;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Base URI of the admin API of the realm, e.g. {@code https://keycloak/auth/admin/realms/my-realm}.
+         */
+        public String getAdminUri() {
+            return adminUri;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+    }
+
+    /**
+     * Metrics of the SSO integration, see {@code SsoMetrics}.
+     */
+    public static class Metrics {
+        private final boolean enabled;
+
+        public Metrics(@DefaultValue("true") boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+
+    /**
+     * Session handling of the camunda webapps.
+     */
+    public static class Session {
+        private final SessionMode mode;
+        private final String secret;
+        private final Duration timeout;
+        private final Duration maximumLifetime;
+        private final Store store;
+
+        public Session(
+            @DefaultValue("http-session") SessionMode mode,
+            String secret,
+            @DefaultValue("30m") Duration timeout,
+            @DefaultValue("10h") Duration maximumLifetime,
+            @DefaultValue Store store
+        ) {
+            this.mode = mode;
+            this.secret = secret;
+            this.timeout = timeout;
+            this.maximumLifetime = maximumLifetime;
+            this.store = store;
+        }
+
+        public SessionMode getMode() {
+            return mode;
+        }
+
+        /**
+         * Key for the session cookie in {@link SessionMode#STATELESS stateless} mode, shared by all nodes and at least 32 characters long.
+         */
+        public String getSecret() {
+            return secret;
+        }
+
+        /**
+         * Idle timeout of the session cookie in {@link SessionMode#STATELESS stateless} mode, renewed when half of it has elapsed, and of the sessions in
+         * {@link SessionMode#CLUSTERED clustered} mode.
+         */
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * Time after the login after which the session cookie in {@link SessionMode#STATELESS stateless} mode is rejected, however often it was
+         * renewed. The default matches Keycloak's default SSO session max.
+         */
+        public Duration getMaximumLifetime() {
+            return maximumLifetime;
+        }
+
+        public Store getStore() {
+            return store;
+        }
+    }
+
+    /**
+     * The shared session store of the {@link SessionMode#CLUSTERED clustered} session mode, see {@code NearCachingSessionRepository}.
+     */
+    public static class Store {
+        private final long nearCacheSize;
+        private final Duration pollInterval;
+        private final boolean initializeSchema;
+
+        public Store(
+            @DefaultValue("10000") long nearCacheSize,
+            @DefaultValue("1s") Duration pollInterval,
+            @DefaultValue("true") boolean initializeSchema
+        ) {
+            this.nearCacheSize = nearCacheSize;
+            this.pollInterval = pollInterval;
+            this.initializeSchema = initializeSchema;
+        }
+
+        public long getNearCacheSize() {
+            return nearCacheSize;
+        }
+
+        /**
+         * Interval in which every node polls the store for sessions changed by other nodes, the maximum time a node may serve a stale session.
+         */
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        /**
+         * Whether to create the table {@code SSO_SESSION} on startup if it doesn't exist.
+         */
+        public boolean isInitializeSchema() {
+            return initializeSchema;
+        }
+    }
 }
@@ -2,27 +2,49 @@ package io.holunda.example.camunda.sso.config;
 
 import io.holunda.example.camunda.sso.config.camunda.OAuthContainerBasedAuthenticationProvider;
 import io.holunda.example.camunda.sso.config.camunda.RestExceptionHandler;
-import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.CookieOAuth2AuthorizationRequestRepository;
+import io.holunda.example.camunda.sso.config.spring.CookieSecurityContextRepository;
+import io.holunda.example.camunda.sso.config.spring.DiscardingOAuth2AuthorizedClientRepository;
+import io.holunda.example.camunda.sso.config.spring.IssuerRegistry;
+import io.holunda.example.camunda.sso.config.spring.RevocationFilter;
+import io.holunda.example.camunda.sso.config.spring.RevocationList;
+import io.holunda.example.camunda.sso.config.spring.StaticResourceCacheFilter;
+import io.holunda.example.camunda.sso.config.spring.StaticResourceMatcher;
 import io.holunda.example.camunda.sso.config.spring.TokenParsingOAuth2UserService;
 import io.holunda.example.camunda.sso.config.spring.TokenParsingOidcUserService;
 import org.camunda.bpm.engine.rest.impl.CamundaRestResources;
 import org.camunda.bpm.engine.rest.security.auth.ProcessEngineAuthenticationFilter;
 import org.camunda.bpm.webapp.impl.security.auth.ContainerBasedAuthenticationFilter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.info.BuildProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.client.web.OAuth2AuthorizationRequestRedirectFilter;
 import org.springframework.security.oauth2.client.web.OAuth2LoginAuthenticationFilter;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.context.SecurityContextPersistenceFilter;
+import org.springframework.security.web.savedrequest.CookieRequestCache;
 import org.springframework.web.filter.ForwardedHeaderFilter;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import static java.util.Collections.singletonMap;
@@ -31,7 +53,8 @@ import static java.util.Collections.singletonMap;
  * A separate {@code WebSecurityConfigurerAdapter} that applies only to the camunda webapps. It configures the SSO role required to access the webapps,
  * integrates the webapp security with spring security and adds an OAuth2 login so that unauthenticated users are redirected to the SSO login page.
  * This works together with the {@code spring.security.oauth2.client.registration.*}
- * and {@code spring.security.oauth2.client.provider.*} configuration properties.
+ * and {@code spring.security.oauth2.client.provider.*} configuration properties. If further issuers have a registration
+ * ({@code application.issuers.realms[].registration}), the {@code registration} request parameter selects the one to log in with.
  */
 @Configuration
 @Order(90)
@@ -39,16 +62,39 @@ public class CamundaWebAppsSecurityConfiguration extends WebSecurityConfigurerAd
 
     // The paths used by camunda webapps. These are the paths that our HttpSecurity applies to
     private static final String[] CAMUNDA_APP_PATHS = { "/app/**", "/api/**", "/lib/**" };
+    private static final String AUTHORIZATION_PATH = "/app" + OAuth2AuthorizationRequestRedirectFilter.DEFAULT_AUTHORIZATION_REQUEST_BASE_URI + "/";
+    private static final String REGISTRATION_PARAMETER = "registration";
+    // The scripts, styles, fonts and images of the webapps. They are the same for every user, so they are served without authentication and cached by
+    // the browser. The html pages are not included, so opening a webapp still redirects to the SSO login.
+    static final StaticResourceMatcher STATIC_RESOURCES = new StaticResourceMatcher(
+        List.of("/app/", "/lib/"),
+        Set.of("js", "css", "map", "woff", "woff2", "ttf", "eot", "otf", "svg", "png", "jpg", "jpeg", "gif", "ico")
+    );
 
     private final TokenParsingOAuth2UserService oAuth2UserService;
     private final ApplicationProperties applicationProperties;
+    private final RevocationList revocationList;
+    private final ObjectProvider<CookieSecurityContextRepository> cookieSecurityContextRepository;
+    private final ObjectProvider<CookieOAuth2AuthorizationRequestRepository> cookieAuthorizationRequestRepository;
 
     public CamundaWebAppsSecurityConfiguration(
-        GrantedAuthoritiesExtractor grantedAuthoritiesExtractor,
-        ApplicationProperties applicationProperties
+        IssuerRegistry issuerRegistry,
+        ApplicationProperties applicationProperties,
+        ObjectProvider<CookieSecurityContextRepository> cookieSecurityContextRepository,
+        ObjectProvider<CookieOAuth2AuthorizationRequestRepository> cookieAuthorizationRequestRepository,
+        ObjectProvider<RevocationList> revocationList
     ) {
-        this.oAuth2UserService = new TokenParsingOAuth2UserService(grantedAuthoritiesExtractor);
+        this.revocationList = revocationList.getIfAvailable();
+        this.oAuth2UserService = new TokenParsingOAuth2UserService(issuerRegistry, this.revocationList);
         this.applicationProperties = applicationProperties;
+        this.cookieSecurityContextRepository = cookieSecurityContextRepository;
+        this.cookieAuthorizationRequestRepository = cookieAuthorizationRequestRepository;
+    }
+
+    // Static resources bypass the spring security filter chains entirely, see STATIC_RESOURCES
+    @Override
+    public void configure(WebSecurity web) {
+        web.ignoring().requestMatchers(STATIC_RESOURCES);
     }
 
     @Override
@@ -79,27 +125,122 @@ public class CamundaWebAppsSecurityConfiguration extends WebSecurityConfigurerAd
                     // put the login processing endpoint under the /app/ prefix so that is is covered by this HttpSecurity. If you change this, remember to also change `spring.security.oauth2.client.registration.my-client-registration.redirect-uri`.
                     .loginProcessingUrl("/app" + OAuth2LoginAuthenticationFilter.DEFAULT_FILTER_PROCESSES_URI)
                     // Set the authorization endpoint for the my-client-registration clientRegistration as the login page because that's the only one we want to use.
-                    .loginPage("/app" + OAuth2AuthorizationRequestRedirectFilter.DEFAULT_AUTHORIZATION_REQUEST_BASE_URI + "/" + applicationProperties.getRegistration());
+                    .loginPage(AUTHORIZATION_PATH + applicationProperties.getRegistration());
+        // @formatter:on
+
+        Set<String> registrations = loginRegistrations();
+        if (registrations.size() > 1) {
+            // the login page above is the default, the registration parameter selects the login of another issuer
+            http.exceptionHandling().authenticationEntryPoint(registrationSelectingEntryPoint(registrations));
+        }
+
+        if (applicationProperties.getSession().getMode() == ApplicationProperties.SessionMode.STATELESS) {
+            configureStatelessSession(http);
+        } else if (applicationProperties.getSession().getMode() == ApplicationProperties.SessionMode.CLUSTERED) {
+            // the default repository keeps the tokens in the memory of the node that handled the login
+            http.oauth2Login().authorizedClientRepository(new DiscardingOAuth2AuthorizedClientRepository());
+        }
+
+        if (revocationList != null) {
+            // ends logins whose token, session or user was revoked, right after the login was restored from the session or cookie
+            http.addFilterAfter(new RevocationFilter(revocationList), SecurityContextPersistenceFilter.class);
+        }
+    }
+
+    // The registration of the default issuer first, then those of the further issuers
+    private Set<String> loginRegistrations() {
+        Set<String> registrations = new LinkedHashSet<>();
+        registrations.add(applicationProperties.getRegistration());
+        for (ApplicationProperties.Issuer issuer : applicationProperties.getIssuers().getRealms()) {
+            if (issuer.getRegistration() != null) {
+                registrations.add(issuer.getRegistration());
+            }
+        }
+        return registrations;
+    }
+
+    private AuthenticationEntryPoint registrationSelectingEntryPoint(Set<String> registrations) {
+        return (request, response, authException) -> {
+            String registration = request.getParameter(REGISTRATION_PARAMETER);
+            if (registration == null || !registrations.contains(registration)) {
+                registration = applicationProperties.getRegistration();
+            }
+            response.sendRedirect(request.getContextPath() + AUTHORIZATION_PATH + registration);
+        };
+    }
+
+    // Keeps all login state in cookies, see StatelessSessionConfiguration
+    private void configureStatelessSession(HttpSecurity http) throws Exception {
+        // @formatter:off
+        http
+            .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+            .securityContext()
+                .securityContextRepository(cookieSecurityContextRepository.getObject())
+                .and()
+            .requestCache()
+                .requestCache(new CookieRequestCache())
+                .and()
+            .oauth2Login()
+                .authorizationEndpoint()
+                    .authorizationRequestRepository(cookieAuthorizationRequestRepository.getObject())
+                    .and()
+                .authorizedClientRepository(new DiscardingOAuth2AuthorizedClientRepository());
         // @formatter:on
     }
 
 
     // The ForwardedHeaderFilter is required to correctly assemble the redirect URL for OAUth2 login. Without the filter, Spring generates an http URL even though the OpenShift
-    // route is accessed through https.
+    // route is accessed through https. Static resources never redirect, so they skip the filter and its request wrapper.
     @Bean
     public FilterRegistrationBean<ForwardedHeaderFilter> forwardedHeaderFilter() {
         FilterRegistrationBean<ForwardedHeaderFilter> filterRegistrationBean = new FilterRegistrationBean<>();
-        filterRegistrationBean.setFilter(new ForwardedHeaderFilter());
+        filterRegistrationBean.setFilter(new ForwardedHeaderFilter() {
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return STATIC_RESOURCES.matches(request) || super.shouldNotFilter(request);
+            }
+        });
         filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
         return filterRegistrationBean;
     }
 
+    // Adds cache headers to the static resources and answers revalidations without serving them again.
+    @Bean
+    public FilterRegistrationBean<StaticResourceCacheFilter> staticResourceCacheFilter(ObjectProvider<BuildProperties> buildProperties) {
+        String webappVersion = ContainerBasedAuthenticationFilter.class.getPackage().getImplementationVersion();
+        // the build time changes with every build, also of the same version, see the build-info goal in the pom
+        BuildProperties build = buildProperties.getIfAvailable();
+        String applicationVersion = build != null && build.getTime() != null ? build.getVersion() + "." + Long.toString(build.getTime().toEpochMilli(), 36) : null;
+        StaticResourceCacheFilter filter = new StaticResourceCacheFilter(
+            STATIC_RESOURCES,
+            applicationProperties.getStaticResources().getMaxAge(),
+            webappVersion,
+            applicationVersion
+        );
+        FilterRegistrationBean<StaticResourceCacheFilter> filterRegistrationBean = new FilterRegistrationBean<>(filter);
+        filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return filterRegistrationBean;
+    }
+
     // This filter is responsible for integrating the camunda webapps security with spring security. It is configured with the ContainerBasedAuthenticationProvider defined below.
+    // Only the app and api paths need an authentication, static resources are served without one.
     @Bean
     public FilterRegistrationBean<ContainerBasedAuthenticationFilter> containerBasedAuthenticationFilterRegistrationBean() {
-        FilterRegistrationBean<ContainerBasedAuthenticationFilter> registrationBean = new FilterRegistrationBean<>(new ContainerBasedAuthenticationFilter());
+        ContainerBasedAuthenticationFilter filter = new ContainerBasedAuthenticationFilter() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+                if (STATIC_RESOURCES.matches((HttpServletRequest) request)) {
+                    chain.doFilter(request, response);
+                } else {
+                    super.doFilter(request, response, chain);
+                }
+            }
+        };
+        FilterRegistrationBean<ContainerBasedAuthenticationFilter> registrationBean = new FilterRegistrationBean<>(filter);
         registrationBean.setInitParameters(singletonMap(ProcessEngineAuthenticationFilter.AUTHENTICATION_PROVIDER_PARAM, OAuthContainerBasedAuthenticationProvider.class.getName()));
-        registrationBean.addUrlPatterns("/*");
+        registrationBean.addUrlPatterns("/app/*", "/api/*");
         registrationBean.setDispatcherTypes(EnumSet.of(DispatcherType.REQUEST));
         return registrationBean;
     }
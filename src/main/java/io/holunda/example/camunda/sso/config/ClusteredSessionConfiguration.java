@@ -0,0 +1,49 @@
+package io.holunda.example.camunda.sso.config;
+
+import io.holunda.example.camunda.sso.config.spring.JdbcSessionStore;
+import io.holunda.example.camunda.sso.config.spring.NearCachingSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+import javax.sql.DataSource;
+
+/**
+ * Components of the clustered session mode ({@code application.session.mode=clustered}), which replaces the servlet {@code HttpSession} with a spring
+ * session kept in the table {@code SSO_SESSION} of the process engine's database. Camunda's webapp filters and spring security keep using the
+ * {@code HttpSession} as before, so the login state of any node is visible to all others and no sticky sessions are needed.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.session", name = "mode", havingValue = "clustered")
+@EnableSpringHttpSession
+public class ClusteredSessionConfiguration {
+
+    @Bean
+    public JdbcSessionStore jdbcSessionStore(DataSource dataSource, ApplicationProperties applicationProperties) {
+        JdbcSessionStore sessionStore = new JdbcSessionStore(dataSource);
+        if (applicationProperties.getSession().getStore().isInitializeSchema()) {
+            sessionStore.initializeSchema();
+        }
+        return sessionStore;
+    }
+
+    @Bean(destroyMethod = "close")
+    public NearCachingSessionRepository sessionRepository(
+        JdbcSessionStore jdbcSessionStore,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Session session = applicationProperties.getSession();
+        NearCachingSessionRepository sessionRepository = new NearCachingSessionRepository(
+            jdbcSessionStore,
+            session.getTimeout(),
+            session.getStore().getNearCacheSize(),
+            session.getStore().getPollInterval(),
+            meterRegistry
+        );
+        sessionRepository.start();
+        return sessionRepository;
+    }
+}
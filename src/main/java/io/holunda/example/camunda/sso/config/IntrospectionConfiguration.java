@@ -0,0 +1,62 @@
+package io.holunda.example.camunda.sso.config;
+
+import io.holunda.example.camunda.sso.config.spring.CachingOpaqueTokenAuthenticationManager;
+import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.RevocationList;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.server.resource.introspection.NimbusOpaqueTokenIntrospector;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Lets the resource server ({@link MainSecurityConfiguration}) accept opaque access tokens besides JWTs ({@code application.introspection.enabled=true}).
+ * Opaque tokens are introspected at the identity provider, authenticating as the client of the registration unless configured otherwise.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.introspection", name = "enabled", havingValue = "true")
+public class IntrospectionConfiguration {
+
+    // Keycloak's introspection endpoint, relative to the issuer of the realm
+    private static final String KEYCLOAK_INTROSPECTION_PATH = "/protocol/openid-connect/token/introspect";
+
+    @Bean
+    public CachingOpaqueTokenAuthenticationManager opaqueTokenAuthenticationManager(
+        ClientRegistrationRepository clientRegistrationRepository,
+        ApplicationProperties applicationProperties,
+        GrantedAuthoritiesExtractor grantedAuthoritiesExtractor,
+        ObjectProvider<RevocationList> revocationList,
+        MeterRegistry meterRegistry,
+        SsoMetrics ssoMetrics
+    ) {
+        ApplicationProperties.Introspection properties = applicationProperties.getIntrospection();
+        ClientRegistration registration = JwtDecoderConfiguration.registration(clientRegistrationRepository, applicationProperties);
+        String uri = properties.getUri() != null ? properties.getUri() : registration.getProviderDetails().getIssuerUri() + KEYCLOAK_INTROSPECTION_PATH;
+        String clientId = properties.getClientId() != null ? properties.getClientId() : registration.getClientId();
+        String clientSecret = properties.getClientSecret() != null ? properties.getClientSecret() : registration.getClientSecret();
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) properties.getTimeout().toMillis());
+        requestFactory.setReadTimeout((int) properties.getTimeout().toMillis());
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new BasicAuthenticationInterceptor(clientId, clientSecret));
+
+        return new CachingOpaqueTokenAuthenticationManager(
+            new NimbusOpaqueTokenIntrospector(uri, restTemplate),
+            grantedAuthoritiesExtractor,
+            properties.getMaximumSize(),
+            properties.getMaximumTtl(),
+            properties.getTimeout(),
+            revocationList.getIfAvailable(),
+            meterRegistry,
+            ssoMetrics
+        );
+    }
+}
@@ -0,0 +1,179 @@
+package io.holunda.example.camunda.sso.config;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.holunda.example.camunda.sso.config.camunda.RoleMapper;
+import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.IssuerRegistry;
+import io.holunda.example.camunda.sso.config.spring.SharedJwkSource;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import io.holunda.example.camunda.sso.config.spring.StreamingClaimParser;
+import io.holunda.example.camunda.sso.config.spring.TrustedIssuer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provides the {@link JwtDecoder} used by both the resource server ({@link MainSecurityConfiguration}) and the OAuth2 login of the webapps
+ * ({@link CamundaWebAppsSecurityConfiguration}). Both verify tokens against the same {@link SharedJwkSource}, so the key set is fetched once at
+ * startup and kept fresh in the background instead of being fetched lazily by each decoder on a request thread.<br>
+ * <br>
+ * Further issuers ({@code application.issuers}) get a decoder and key set of their own, see {@link IssuerRegistry}.
+ */
+@Configuration
+public class JwtDecoderConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(JwtDecoderConfiguration.class.getSimpleName());
+
+    // Keycloak's JWK set endpoint, relative to the issuer of the realm
+    private static final String KEYCLOAK_CERTS_PATH = "/protocol/openid-connect/certs";
+
+    @Bean(destroyMethod = "close")
+    public SharedJwkSource sharedJwkSource(
+        ClientRegistrationRepository clientRegistrationRepository,
+        ApplicationProperties applicationProperties,
+        SsoMetrics ssoMetrics
+    ) throws MalformedURLException {
+        ApplicationProperties.Jwks properties = applicationProperties.getJwks();
+        String jwkSetUri = properties.getUri() != null
+            ? properties.getUri()
+            : registration(clientRegistrationRepository, applicationProperties).getProviderDetails().getJwkSetUri();
+
+        SharedJwkSource jwkSource = createJwkSource(jwkSetUri, properties, ssoMetrics);
+        jwkSource.start();
+        return jwkSource;
+    }
+
+    @Bean
+    public JwtDecoder jwtDecoder(
+        SharedJwkSource sharedJwkSource,
+        ClientRegistrationRepository clientRegistrationRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        return createJwtDecoder(sharedJwkSource, registration(clientRegistrationRepository, applicationProperties).getProviderDetails().getIssuerUri());
+    }
+
+    @Bean(destroyMethod = "close")
+    public IssuerRegistry issuerRegistry(
+        JwtDecoder jwtDecoder,
+        ClientRegistrationRepository clientRegistrationRepository,
+        ApplicationProperties applicationProperties,
+        GrantedAuthoritiesExtractor grantedAuthoritiesExtractor,
+        StreamingClaimParser streamingClaimParser,
+        SsoMetrics ssoMetrics
+    ) throws MalformedURLException {
+        ApplicationProperties.Issuers properties = applicationProperties.getIssuers();
+        String primaryUri = registration(clientRegistrationRepository, applicationProperties).getProviderDetails().getIssuerUri();
+        // the key set of the primary issuer is the sharedJwkSource bean
+        TrustedIssuer primary = new TrustedIssuer(primaryUri, jwtDecoder, grantedAuthoritiesExtractor, null);
+
+        List<TrustedIssuer> configured = new ArrayList<>();
+        for (ApplicationProperties.Issuer issuer : properties.getRealms()) {
+            ClientRegistration registration = null;
+            if (issuer.getRegistration() != null) {
+                registration = clientRegistrationRepository.findByRegistrationId(issuer.getRegistration());
+                if (registration == null) {
+                    throw new IllegalStateException("Unknown client registration " + issuer.getRegistration());
+                }
+            }
+            String uri = issuer.getUri() != null ? issuer.getUri() : registration != null ? registration.getProviderDetails().getIssuerUri() : null;
+            if (uri == null) {
+                throw new IllegalStateException("application.issuers.realms[].uri or registration is required");
+            }
+            String jwkSetUri = issuer.getJwkSetUri();
+            if (jwkSetUri == null) {
+                jwkSetUri = registration != null && registration.getProviderDetails().getJwkSetUri() != null
+                    ? registration.getProviderDetails().getJwkSetUri()
+                    : uri + KEYCLOAK_CERTS_PATH;
+            }
+            SharedJwkSource jwkSource = createJwkSource(jwkSetUri, applicationProperties.getJwks(), ssoMetrics);
+            jwkSource.start();
+            Converter<Jwt, AbstractAuthenticationToken> authenticationConverter =
+                grantedAuthoritiesExtractor.withRoleMapping(new RoleMapper(issuer.getRoleMapping()));
+            configured.add(new TrustedIssuer(uri, createJwtDecoder(jwkSource, uri), authenticationConverter, jwkSource));
+        }
+
+        RoleMapper discoveredRoleMapping = new RoleMapper(properties.getRoleMapping());
+        return new IssuerRegistry(
+            primary,
+            configured,
+            properties.getTrustedPrefix(),
+            properties.getMaximumDiscovered(),
+            properties.getDiscoveryAttemptsPerMinute(),
+            applicationProperties.getJwks().getMaximumWait(),
+            uri -> discover(uri, grantedAuthoritiesExtractor.withRoleMapping(discoveredRoleMapping), applicationProperties.getJwks(), ssoMetrics),
+            applicationProperties.getJwks().getMinimumRefreshInterval(),
+            streamingClaimParser
+        );
+    }
+
+    // sets up an issuer below the trusted prefix, if its key set can be fetched
+    private static TrustedIssuer discover(
+        String uri,
+        Converter<Jwt, AbstractAuthenticationToken> authenticationConverter,
+        ApplicationProperties.Jwks properties,
+        SsoMetrics ssoMetrics
+    ) {
+        SharedJwkSource jwkSource;
+        try {
+            jwkSource = createJwkSource(uri + KEYCLOAK_CERTS_PATH, properties, ssoMetrics);
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.FINE, "Not trusting " + uri, e);
+            return null;
+        }
+        jwkSource.start();
+        if (!jwkSource.hasKeys()) {
+            jwkSource.close();
+            return null;
+        }
+        return new TrustedIssuer(uri, createJwtDecoder(jwkSource, uri), authenticationConverter, jwkSource);
+    }
+
+    private static SharedJwkSource createJwkSource(String jwkSetUri, ApplicationProperties.Jwks properties, SsoMetrics ssoMetrics) throws MalformedURLException {
+        return new SharedJwkSource(
+            new URL(jwkSetUri),
+            properties.getTimeToLive(),
+            properties.getRefreshAhead(),
+            properties.getMinimumRefreshInterval(),
+            properties.getTimeout(),
+            properties.getMaximumWait(),
+            ssoMetrics
+        );
+    }
+
+    private static JwtDecoder createJwtDecoder(SharedJwkSource jwkSource, String issuer) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // claims are validated by spring, see below
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        jwtDecoder.setJwtValidator(issuer != null ? JwtValidators.createDefaultWithIssuer(issuer) : JwtValidators.createDefault());
+        return jwtDecoder;
+    }
+
+    static ClientRegistration registration(ClientRegistrationRepository clientRegistrationRepository, ApplicationProperties applicationProperties) {
+        ClientRegistration registration = clientRegistrationRepository.findByRegistrationId(applicationProperties.getRegistration());
+        if (registration == null) {
+            throw new IllegalStateException("Unknown client registration " + applicationProperties.getRegistration());
+        }
+        return registration;
+    }
+}
@@ -1,17 +1,24 @@
 package io.holunda.example.camunda.sso.config;
 
-import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.CachingJwtAuthenticationManager;
+import io.holunda.example.camunda.sso.config.spring.CachingOpaqueTokenAuthenticationManager;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
 
+import static io.holunda.example.camunda.sso.rest.REST.BACKCHANNEL_LOGOUT_PATH;
 import static io.holunda.example.camunda.sso.rest.REST.REST_PREFIX;
+import static io.holunda.example.camunda.sso.rest.REST.REVOCATIONS_PATH;
 
 /**
- * Enables security by OIDC JWT Token.
+ * Enables security by OIDC JWT Token, and by opaque tokens if introspection is enabled (see {@link IntrospectionConfiguration}). JWTs of further issuers
+ * are verified by the decoder of their issuer, see {@link io.holunda.example.camunda.sso.config.spring.IssuerRegistry IssuerRegistry}.
  */
 @Configuration
 @EnableGlobalMethodSecurity(jsr250Enabled = true)
@@ -22,18 +29,28 @@ public class MainSecurityConfiguration extends WebSecurityConfigurerAdapter {
         "/actuator/**", // spring actuator endpoints
         "/error", // spring error page
         "/public", // visible resources, for example for SPA
+        BACKCHANNEL_LOGOUT_PATH, // called by the identity provider, authenticated by the signed logout token
     };
 
     private static final String CAMUNDA_JERSEY_PATH = "/rest/**";
 
-    private final GrantedAuthoritiesExtractor grantedAuthoritiesExtractor;
+    private final CachingJwtAuthenticationManager jwtAuthenticationManager;
+    private final ObjectProvider<CachingOpaqueTokenAuthenticationManager> opaqueTokenAuthenticationManager;
+    private final ApplicationProperties applicationProperties;
 
-    public MainSecurityConfiguration(GrantedAuthoritiesExtractor grantedAuthoritiesExtractor) {
-        this.grantedAuthoritiesExtractor = grantedAuthoritiesExtractor;
+    public MainSecurityConfiguration(
+        CachingJwtAuthenticationManager jwtAuthenticationManager,
+        ObjectProvider<CachingOpaqueTokenAuthenticationManager> opaqueTokenAuthenticationManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.jwtAuthenticationManager = jwtAuthenticationManager;
+        this.opaqueTokenAuthenticationManager = opaqueTokenAuthenticationManager;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
+        String adminRole = applicationProperties.getRevocation().getAdminRole();
         // @formatter:off
         http
           .csrf()
@@ -42,13 +59,25 @@ public class MainSecurityConfiguration extends WebSecurityConfigurerAdapter {
           .authorizeRequests()
             .antMatchers(HttpMethod.OPTIONS).permitAll() // allow options
             .antMatchers(UNPROTECTED_PATHS).permitAll() // permit access to public resources
+            .antMatchers(REVOCATIONS_PATH).access(adminRole != null ? "hasRole('" + adminRole + "')" : "denyAll") // revoking tokens requires the admin role, see RevocationEndpoint
             .antMatchers(REST_PREFIX + "/**").authenticated() // require authentication for any REST controller. (configure differently here)
-            .antMatchers(CAMUNDA_JERSEY_PATH).authenticated() // require authentication for camunda REST endpoints. (configure differently here)
-          .and()
-          .oauth2ResourceServer()
-            .jwt()
-              .jwtAuthenticationConverter(grantedAuthoritiesExtractor);
+            .antMatchers(CAMUNDA_JERSEY_PATH).authenticated(); // require authentication for camunda REST endpoints. (configure differently here)
         // @formatter:on
+
+        CachingOpaqueTokenAuthenticationManager opaqueTokens = opaqueTokenAuthenticationManager.getIfAvailable();
+        if (opaqueTokens == null) {
+            // verifies the token with the decoder of its issuer and extracts the authorities, see GrantedAuthoritiesExtractor. Verified tokens are cached until they expire.
+            http.oauth2ResourceServer().jwt().authenticationManager(jwtAuthenticationManager);
+        } else {
+            // JWTs are verified locally, all other tokens are introspected at the identity provider. Both are cached until they expire.
+            AuthenticationManager byTokenShape = authentication -> {
+                String token = ((BearerTokenAuthenticationToken) authentication).getToken();
+                return CachingOpaqueTokenAuthenticationManager.isJwt(token)
+                    ? jwtAuthenticationManager.authenticate(authentication)
+                    : opaqueTokens.authenticate(authentication);
+            };
+            http.oauth2ResourceServer().authenticationManagerResolver(request -> byTokenShape);
+        }
     }
 
 }
@@ -0,0 +1,44 @@
+package io.holunda.example.camunda.sso.config;
+
+import io.holunda.example.camunda.sso.config.spring.JdbcRevocationStore;
+import io.holunda.example.camunda.sso.config.spring.RevocationList;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Components of token revocation ({@code application.revocation.enabled=true}). Revoked tokens, sessions and users are kept in the table
+ * {@code SSO_REVOCATION} of the process engine's database and checked by the resource server ({@link MainSecurityConfiguration}) and the login of the
+ * webapps ({@link CamundaWebAppsSecurityConfiguration}). Revocations are made by back-channel logout of the identity provider or via the REST API,
+ * see {@code RevocationEndpoint}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.revocation", name = "enabled", havingValue = "true")
+public class RevocationConfiguration {
+
+    @Bean
+    public JdbcRevocationStore jdbcRevocationStore(DataSource dataSource, ApplicationProperties applicationProperties) {
+        JdbcRevocationStore revocationStore = new JdbcRevocationStore(dataSource);
+        if (applicationProperties.getRevocation().isInitializeSchema()) {
+            revocationStore.initializeSchema();
+        }
+        return revocationStore;
+    }
+
+    @Bean(destroyMethod = "close")
+    public RevocationList revocationList(JdbcRevocationStore jdbcRevocationStore, ApplicationProperties applicationProperties, SsoMetrics ssoMetrics) {
+        ApplicationProperties.Revocation properties = applicationProperties.getRevocation();
+        RevocationList revocationList = new RevocationList(
+            jdbcRevocationStore,
+            properties.getPollInterval(),
+            properties.getRetention(),
+            properties.getExpectedRevocations(),
+            ssoMetrics
+        );
+        revocationList.start();
+        return revocationList;
+    }
+}
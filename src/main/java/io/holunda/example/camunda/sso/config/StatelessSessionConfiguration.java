@@ -0,0 +1,76 @@
+package io.holunda.example.camunda.sso.config;
+
+import io.holunda.example.camunda.sso.config.camunda.TransientSessionFilter;
+import io.holunda.example.camunda.sso.config.spring.AuthorityRegistry;
+import io.holunda.example.camunda.sso.config.spring.CookieCodec;
+import io.holunda.example.camunda.sso.config.spring.CookieOAuth2AuthorizationRequestRepository;
+import io.holunda.example.camunda.sso.config.spring.CookieSecurityContextRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+
+import javax.servlet.DispatcherType;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Components of the stateless session mode ({@code application.session.mode=stateless}), which keeps the login of the webapps in an encrypted cookie
+ * instead of the {@code HttpSession}. They are plugged into the webapps' security by {@link CamundaWebAppsSecurityConfiguration}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.session", name = "mode", havingValue = "stateless")
+public class StatelessSessionConfiguration {
+
+    // the user attributes read by IdentitySnapshots
+    private static final List<String> USER_ATTRIBUTES = List.of("sub", "given_name", "family_name", "email");
+    // the claims checked by the RevocationList
+    private static final List<String> REVOCATION_ATTRIBUTES = List.of("iat", "jti", "sid", "session_state");
+
+    @Bean
+    public CookieCodec cookieCodec(ApplicationProperties applicationProperties) {
+        return new CookieCodec(applicationProperties.getSession().getSecret());
+    }
+
+    @Bean
+    public CookieSecurityContextRepository cookieSecurityContextRepository(
+        CookieCodec cookieCodec,
+        ClientRegistrationRepository clientRegistrationRepository,
+        AuthorityRegistry authorityRegistry,
+        ApplicationProperties applicationProperties
+    ) {
+        List<String> attributeNames = new ArrayList<>(USER_ATTRIBUTES);
+        if (applicationProperties.getTenantClaim() != null) {
+            attributeNames.add(applicationProperties.getTenantClaim());
+        }
+        if (applicationProperties.getRevocation().isEnabled()) {
+            attributeNames.addAll(REVOCATION_ATTRIBUTES);
+        }
+        return new CookieSecurityContextRepository(
+            cookieCodec,
+            clientRegistrationRepository,
+            authorityRegistry,
+            applicationProperties.getSession().getTimeout(),
+            applicationProperties.getSession().getMaximumLifetime(),
+            attributeNames
+        );
+    }
+
+    @Bean
+    public CookieOAuth2AuthorizationRequestRepository cookieOAuth2AuthorizationRequestRepository(CookieCodec cookieCodec) {
+        return new CookieOAuth2AuthorizationRequestRepository(cookieCodec);
+    }
+
+    // Runs before spring security and camunda's filters so that none of them creates a servlet session.
+    @Bean
+    public FilterRegistrationBean<TransientSessionFilter> transientSessionFilter() {
+        FilterRegistrationBean<TransientSessionFilter> registrationBean = new FilterRegistrationBean<>(new TransientSessionFilter());
+        registrationBean.addUrlPatterns("/*");
+        registrationBean.setDispatcherTypes(EnumSet.allOf(DispatcherType.class));
+        registrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registrationBean;
+    }
+}
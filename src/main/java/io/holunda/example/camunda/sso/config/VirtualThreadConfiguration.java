@@ -0,0 +1,50 @@
+package io.holunda.example.camunda.sso.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Serves requests of the embedded Tomcat, i.e. the camunda REST API, the webapps and the application's endpoints, on a new virtual thread each
+ * ({@code application.threads=virtual}). Threads blocked on JDBC or on the identity provider then no longer hold one of the
+ * {@code server.tomcat.threads.max} pool threads; the number of concurrent requests is bounded by {@code server.tomcat.max-connections} and the
+ * connection pool instead.<br>
+ * <br>
+ * The application is built for Java 11, so the executor is created reflectively and startup fails on a runtime without virtual threads. The identity
+ * components must not pin virtual threads while waiting for I/O: spring security keeps the security context in a plain {@code ThreadLocal}, the only
+ * lock held during I/O is the {@code ReentrantLock} of {@code SharedJwkSource}, {@code IssuerRegistry} lets concurrent requests wait for the discovery
+ * of an issuer on a future instead of a lock, and caches only compute values without I/O while holding a lock. {@code synchronized} is left to short
+ * in-memory updates, e.g. in {@code RevocationList}.<br>
+ * <br>
+ * Whether virtual threads pay off depends on the deployment; compare both modes with the load test in {@code src/loadtest/java}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application", name = "threads", havingValue = "virtual")
+public class VirtualThreadConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreadConfiguration.class.getSimpleName());
+
+    // not a bean of its own: an Executor bean would replace spring boot's applicationTaskExecutor
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        LOGGER.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("application.threads=virtual requires Java 21, running on " + Runtime.version(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Couldn't create a virtual thread executor", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.interceptor.SessionFactory;
+import org.camunda.bpm.spring.boot.starter.configuration.CamundaProcessEngineConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the engine's {@code AuthorizationManager} with the {@link CachingAuthorizationManager}. Disable with
+ * {@code application.authorization-cache.enabled=false}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.authorization-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AuthorizationCacheConfiguration implements CamundaProcessEngineConfiguration {
+
+    private final AuthorizationDecisionCache decisionCache;
+
+    public AuthorizationCacheConfiguration(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.AuthorizationCache properties = applicationProperties.getAuthorizationCache();
+        this.decisionCache = new AuthorizationDecisionCache(properties.getMaximumSize(), properties.getTimeToLive(), meterRegistry);
+    }
+
+    @Override
+    public void preInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        List<SessionFactory> sessionFactories = new ArrayList<>();
+        if (processEngineConfiguration.getCustomSessionFactories() != null) {
+            sessionFactories.addAll(processEngineConfiguration.getCustomSessionFactories());
+        }
+        sessionFactories.add(new CachingAuthorizationManagerFactory(decisionCache));
+        processEngineConfiguration.setCustomSessionFactories(sessionFactories);
+    }
+}
@@ -0,0 +1,208 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.camunda.bpm.engine.impl.db.CompositePermissionCheck;
+import org.camunda.bpm.engine.impl.db.PermissionCheck;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The authorization decisions of the process engine shared by all {@link CachingAuthorizationManager}s, keyed by user, group set and permission check.
+ * Users logged in via SSO carry all their roles as groups, so the decisions of users with the same role combination are computed once instead of
+ * querying {@code ACT_RU_AUTHORIZATION} with the same long list of group ids again and again.<br>
+ * <br>
+ * Every change of an authorization through the engine clears the cache when its transaction commits. Decisions computed concurrently with such a change
+ * are discarded by comparing a generation counter, so a decision read before the commit is never cached after it.
+ */
+public class AuthorizationDecisionCache {
+
+    private static final long MAX_GROUP_SETS = 10_000;
+
+    private final Cache<Object, Object> entries;
+    // the group sets of the authentications, by identity of the group id list, so the fingerprint is computed once per authentication
+    private final Cache<List<String>, GroupSet> groupSets = Caffeine.newBuilder()
+                                                                    .weakKeys()
+                                                                    .maximumSize(MAX_GROUP_SETS)
+                                                                    .build();
+    private final AtomicLong generation = new AtomicLong();
+
+    public AuthorizationDecisionCache(long maximumSize, Duration timeToLive, MeterRegistry meterRegistry) {
+        this.entries = Caffeine.newBuilder()
+                               .maximumSize(maximumSize)
+                               .expireAfterWrite(timeToLive)
+                               .recordStats()
+                               .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "sso.authorizations");
+    }
+
+    /**
+     * @return the decision of the given check, computing and caching it with {@code decision} if it is not cached.
+     */
+    boolean isAuthorized(String userId, List<String> groupIds, CompositePermissionCheck check, Supplier<Boolean> decision) {
+        return get(new DecisionKey(userId, groupSet(groupIds), fingerprint(check)), decision);
+    }
+
+    /**
+     * @return the decision of the given check, computing and caching it with {@code decision} if it is not cached.
+     */
+    boolean isAuthorized(String userId, List<String> groupIds, PermissionCheck check, Supplier<Boolean> decision) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendFingerprint(fingerprint, check);
+        return get(new DecisionKey(userId, groupSet(groupIds), fingerprint.toString()), decision);
+    }
+
+    /**
+     * @return the ids of the given groups that occur in any authorization, computing and caching them with {@code filter} if they are not cached.
+     */
+    List<String> authorizedGroupIds(List<String> groupIds, Supplier<List<String>> filter) {
+        return get(new AuthorizedGroupsKey(groupSet(groupIds)), filter);
+    }
+
+    /**
+     * Clears all decisions, called when a change of authorizations is committed.
+     */
+    void invalidate() {
+        // the generation has to change first, see get
+        generation.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Object key, Supplier<T> loader) {
+        T cached = (T) entries.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedGeneration = generation.get();
+        T loaded = loader.get();
+        entries.put(key, loaded);
+        // an invalidation that ran after the put has removed the entry already, one that ran between load and put has changed the generation
+        if (generation.get() != loadedGeneration) {
+            entries.invalidate(key);
+        }
+        return loaded;
+    }
+
+    private GroupSet groupSet(List<String> groupIds) {
+        if (groupIds == null || groupIds.isEmpty()) {
+            return GroupSet.EMPTY;
+        }
+        return groupSets.get(groupIds, GroupSet::new);
+    }
+
+    private static String fingerprint(CompositePermissionCheck check) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendFingerprint(fingerprint, check);
+        return fingerprint.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, CompositePermissionCheck check) {
+        fingerprint.append(check.isDisjunctive() ? "any(" : "all(");
+        for (PermissionCheck atomicCheck : check.getAtomicChecks()) {
+            appendFingerprint(fingerprint, atomicCheck);
+            fingerprint.append(',');
+        }
+        for (CompositePermissionCheck compositeCheck : check.getCompositeChecks()) {
+            appendFingerprint(fingerprint, compositeCheck);
+            fingerprint.append(',');
+        }
+        fingerprint.append(')');
+    }
+
+    private static void appendFingerprint(StringBuilder fingerprint, PermissionCheck check) {
+        fingerprint.append(check.getResource().resourceType())
+                   .append(':')
+                   .append(check.getResourceId())
+                   .append(':')
+                   .append(check.getPermission().getName())
+                   .append(':')
+                   .append(check.getAuthorizationNotFoundReturnValue());
+    }
+
+    private static class GroupSet {
+
+        static final GroupSet EMPTY = new GroupSet(List.of());
+
+        private final Set<String> groupIds;
+        private final int hashCode;
+
+        GroupSet(List<String> groupIds) {
+            this.groupIds = Set.copyOf(groupIds);
+            this.hashCode = this.groupIds.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GroupSet)) {
+                return false;
+            }
+            GroupSet other = (GroupSet) o;
+            return hashCode == other.hashCode && groupIds.equals(other.groupIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static class DecisionKey {
+
+        private final String userId;
+        private final GroupSet groupSet;
+        private final String check;
+
+        DecisionKey(String userId, GroupSet groupSet, String check) {
+            this.userId = userId;
+            this.groupSet = groupSet;
+            this.check = check;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return Objects.equals(userId, other.userId) && groupSet.equals(other.groupSet) && check.equals(other.check);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, groupSet, check);
+        }
+    }
+
+    private static class AuthorizedGroupsKey {
+
+        private final GroupSet groupSet;
+
+        AuthorizedGroupsKey(GroupSet groupSet) {
+            this.groupSet = groupSet;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof AuthorizedGroupsKey && groupSet.equals(((AuthorizedGroupsKey) o).groupSet);
+        }
+
+        @Override
+        public int hashCode() {
+            return groupSet.hashCode();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.authorization.Resource;
+import org.camunda.bpm.engine.impl.cfg.TransactionState;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.db.CompositePermissionCheck;
+import org.camunda.bpm.engine.impl.db.DbEntity;
+import org.camunda.bpm.engine.impl.db.PermissionCheck;
+import org.camunda.bpm.engine.impl.persistence.entity.AuthorizationEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.AuthorizationManager;
+
+import java.util.List;
+
+/**
+ * Camunda's {@link AuthorizationManager} answering authorization checks from the {@link AuthorizationDecisionCache}. Opened per command context by
+ * {@link CachingAuthorizationManagerFactory}.<br>
+ * <br>
+ * Once a command changes an authorization, it bypasses the cache for the rest of the command, so that it sees its own uncommitted changes, and clears
+ * the cache when its transaction commits.
+ */
+public class CachingAuthorizationManager extends AuthorizationManager {
+
+    private final AuthorizationDecisionCache decisionCache;
+    private boolean authorizationsChanged;
+
+    public CachingAuthorizationManager(AuthorizationDecisionCache decisionCache) {
+        this.decisionCache = decisionCache;
+    }
+
+    @Override
+    public boolean isAuthorized(String userId, List<String> groupIds, CompositePermissionCheck compositePermissionCheck) {
+        if (authorizationsChanged) {
+            return super.isAuthorized(userId, groupIds, compositePermissionCheck);
+        }
+        return decisionCache.isAuthorized(userId, groupIds, compositePermissionCheck,
+            () -> super.isAuthorized(userId, groupIds, compositePermissionCheck));
+    }
+
+    @Override
+    public boolean isAuthorized(String userId, List<String> groupIds, PermissionCheck permissionCheck) {
+        if (authorizationsChanged) {
+            return super.isAuthorized(userId, groupIds, permissionCheck);
+        }
+        return decisionCache.isAuthorized(userId, groupIds, permissionCheck, () -> super.isAuthorized(userId, groupIds, permissionCheck));
+    }
+
+    // also narrows the group ids of the authorization checks in queries, e.g. of the task list
+    @Override
+    protected List<String> filterAuthenticatedGroupIds(List<String> authenticatedGroupIds) {
+        if (authorizationsChanged || authenticatedGroupIds == null || authenticatedGroupIds.isEmpty()) {
+            return super.filterAuthenticatedGroupIds(authenticatedGroupIds);
+        }
+        return decisionCache.authorizedGroupIds(authenticatedGroupIds, () -> List.copyOf(super.filterAuthenticatedGroupIds(authenticatedGroupIds)));
+    }
+
+    @Override
+    public void insert(DbEntity dbEntity) {
+        super.insert(dbEntity);
+        onChange(dbEntity);
+    }
+
+    @Override
+    public void update(AuthorizationEntity authorization) {
+        super.update(authorization);
+        onChange(authorization);
+    }
+
+    @Override
+    public void delete(DbEntity dbEntity) {
+        super.delete(dbEntity);
+        onChange(dbEntity);
+    }
+
+    @Override
+    public void deleteAuthorizationsByResourceId(Resource resource, String resourceId) {
+        super.deleteAuthorizationsByResourceId(resource, resourceId);
+        onAuthorizationsChanged();
+    }
+
+    @Override
+    public void deleteAuthorizationsByResourceIdAndUserId(Resource resource, String resourceId, String userId) {
+        super.deleteAuthorizationsByResourceIdAndUserId(resource, resourceId, userId);
+        onAuthorizationsChanged();
+    }
+
+    @Override
+    public void deleteAuthorizationsByResourceIdAndGroupId(Resource resource, String resourceId, String groupId) {
+        super.deleteAuthorizationsByResourceIdAndGroupId(resource, resourceId, groupId);
+        onAuthorizationsChanged();
+    }
+
+    private void onChange(DbEntity dbEntity) {
+        if (dbEntity instanceof AuthorizationEntity) {
+            onAuthorizationsChanged();
+        }
+    }
+
+    private void onAuthorizationsChanged() {
+        if (authorizationsChanged) {
+            return;
+        }
+        authorizationsChanged = true;
+        Context.getCommandContext()
+               .getTransactionContext()
+               .addTransactionListener(TransactionState.COMMITTED, commandContext -> decisionCache.invalidate());
+    }
+}
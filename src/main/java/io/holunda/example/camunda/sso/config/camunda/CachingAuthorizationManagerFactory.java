@@ -0,0 +1,28 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.impl.interceptor.Session;
+import org.camunda.bpm.engine.impl.interceptor.SessionFactory;
+import org.camunda.bpm.engine.impl.persistence.entity.AuthorizationManager;
+
+/**
+ * Opens a {@link CachingAuthorizationManager} per command context. Registered as custom session factory, it replaces camunda's
+ * {@code GenericManagerFactory} for the {@link AuthorizationManager}.
+ */
+public class CachingAuthorizationManagerFactory implements SessionFactory {
+
+    private final AuthorizationDecisionCache decisionCache;
+
+    public CachingAuthorizationManagerFactory(AuthorizationDecisionCache decisionCache) {
+        this.decisionCache = decisionCache;
+    }
+
+    @Override
+    public Class<?> getSessionType() {
+        return AuthorizationManager.class;
+    }
+
+    @Override
+    public Session openSession() {
+        return new CachingAuthorizationManager(decisionCache);
+    }
+}
@@ -0,0 +1,31 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads users, groups and memberships from the identity provider, see {@link IdentityDirectory}. Implementations are called from a background thread
+ * only, never while answering an identity query.
+ */
+public interface DirectoryClient {
+
+    List<User> fetchUsers();
+
+    /**
+     * @return the groups, identified in the same way as the groups derived from the roles of an access token.
+     */
+    List<Group> fetchGroups();
+
+    /**
+     * Called once per refresh, after {@link #fetchUsers()} and {@link #fetchGroups()}, with all groups the {@link RoleMapper} keeps, so that
+     * implementations can read the memberships in as few calls as the identity provider allows.
+     *
+     * @return the ids of the users that are member of the given groups, by group id.
+     */
+    Map<String, Set<String>> fetchMembers(Collection<Group> groups);
+}
@@ -0,0 +1,114 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.GroupQueryImpl;
+import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.UserQueryImpl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Immutable index of the users, groups and memberships read by the {@link IdentityDirectory}. An index is never changed once published, so any number
+ * of threads can query it without locking.
+ */
+public class DirectoryIndex {
+
+    // the directory doesn't know about tenants, they are only taken from the token of the logged-in user
+    private static final Function<String, Set<String>> NO_TENANTS = ignored -> Set.of();
+
+    static final DirectoryIndex EMPTY = new DirectoryIndex(List.of(), List.of(), Map.of());
+
+    private final Map<String, User> usersById;
+    private final Map<String, Group> groupsById;
+    private final Map<String, Set<String>> userIdsByGroup;
+    private final Map<String, Set<String>> groupIdsByUser;
+
+    DirectoryIndex(List<User> users, List<Group> groups, Map<String, Set<String>> membersByGroup) {
+        this.usersById = index(users, User::getId);
+        this.groupsById = index(groups, Group::getId);
+
+        Map<String, Set<String>> userIdsByGroup = new HashMap<>();
+        Map<String, Set<String>> groupIdsByUser = new HashMap<>();
+        membersByGroup.forEach((groupId, userIds) -> {
+            userIdsByGroup.put(groupId, Set.copyOf(userIds));
+            userIds.forEach(userId -> groupIdsByUser.computeIfAbsent(userId, ignored -> new HashSet<>()).add(groupId));
+        });
+        groupIdsByUser.replaceAll((userId, groupIds) -> Set.copyOf(groupIds));
+        this.userIdsByGroup = userIdsByGroup;
+        this.groupIdsByUser = groupIdsByUser;
+    }
+
+    private static <T> Map<String, T> index(List<T> entries, Function<T, String> id) {
+        Map<String, T> index = new LinkedHashMap<>();
+        entries.stream().sorted(Comparator.comparing(id)).forEach(entry -> index.putIfAbsent(id.apply(entry), entry));
+        return Collections.unmodifiableMap(index);
+    }
+
+    public int getUserCount() {
+        return usersById.size();
+    }
+
+    public int getGroupCount() {
+        return groupsById.size();
+    }
+
+    public User getUser(String userId) {
+        return usersById.get(userId);
+    }
+
+    public Group getGroup(String groupId) {
+        return groupsById.get(groupId);
+    }
+
+    public Set<String> getGroupIds(String userId) {
+        return groupIdsByUser.getOrDefault(userId, Set.of());
+    }
+
+    public Set<String> getMemberIds(String groupId) {
+        return userIdsByGroup.getOrDefault(groupId, Set.of());
+    }
+
+    public List<User> findUsers(UserQueryImpl query, Page page) {
+        return OAuthQueryEvaluator.list(
+            userCandidates(query), OAuthQueryEvaluator.userFilter(query, this::getGroupIds, NO_TENANTS), OAuthQueryEvaluator.userOrder(query), page);
+    }
+
+    public long countUsers(UserQueryImpl query) {
+        return OAuthQueryEvaluator.count(userCandidates(query), OAuthQueryEvaluator.userFilter(query, this::getGroupIds, NO_TENANTS));
+    }
+
+    public List<Group> findGroups(GroupQueryImpl query, Page page) {
+        return OAuthQueryEvaluator.list(
+            groupCandidates(query), OAuthQueryEvaluator.groupFilter(query, this::getMemberIds), OAuthQueryEvaluator.groupOrder(query), page);
+    }
+
+    public long countGroups(GroupQueryImpl query) {
+        return OAuthQueryEvaluator.count(groupCandidates(query), OAuthQueryEvaluator.groupFilter(query, this::getMemberIds));
+    }
+
+    // candidates are in id order, like the results of the database backed queries without explicit order
+    private Collection<User> userCandidates(UserQueryImpl query) {
+        if (query.getId() == null && query.getIds() == null && query.getGroupId() != null) {
+            return OAuthQueryEvaluator.byIds(new TreeSet<>(getMemberIds(query.getGroupId())), usersById::get);
+        }
+        return OAuthQueryEvaluator.candidates(query.getId(), query.getIds(), usersById::get, usersById.values());
+    }
+
+    private Collection<Group> groupCandidates(GroupQueryImpl query) {
+        if (query.getId() == null && query.getIds() == null && query.getUserId() != null) {
+            return OAuthQueryEvaluator.byIds(new TreeSet<>(getGroupIds(query.getUserId())), groupsById::get);
+        }
+        return OAuthQueryEvaluator.candidates(query.getId(), query.getIds(), groupsById::get, groupsById.values());
+    }
+}
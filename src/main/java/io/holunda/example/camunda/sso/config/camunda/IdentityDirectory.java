@@ -0,0 +1,96 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthGroup;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Directory of all users and groups of the identity provider, used by {@link OAuthIdentityServiceProvider} to resolve users and groups beyond the
+ * currently logged-in user. The directory is read through a {@link DirectoryClient} on a background thread and published as an immutable
+ * {@link DirectoryIndex}. Queries only ever read the latest published index, so their latency doesn't depend on the identity provider, and if a
+ * refresh fails the previous index stays in place.<br>
+ * <br>
+ * The groups of the directory are mapped by the {@link RoleMapper} like the groups of a logged-in user.
+ */
+public class IdentityDirectory implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(IdentityDirectory.class.getSimpleName());
+
+    private final DirectoryClient directoryClient;
+    private final RoleMapper roleMapper;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "identity-directory-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile DirectoryIndex index = DirectoryIndex.EMPTY;
+
+    public IdentityDirectory(DirectoryClient directoryClient, RoleMapper roleMapper, Duration refreshInterval) {
+        this.directoryClient = directoryClient;
+        this.roleMapper = roleMapper;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Starts loading the directory in the background, the first load begins immediately.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    public DirectoryIndex getIndex() {
+        return index;
+    }
+
+    void refresh() {
+        try {
+            List<User> users = directoryClient.fetchUsers();
+            Map<String, Group> groupsById = new LinkedHashMap<>();
+            Map<String, Set<String>> members = new HashMap<>();
+            List<Group> keptRoles = new ArrayList<>();
+            for (Group role : directoryClient.fetchGroups()) {
+                // the groups of the directory are roles, too. Roles mapped to the same group share it and their members
+                String groupId = roleMapper.map(role.getId());
+                if (groupId == null) {
+                    // dropped before its members are fetched
+                    continue;
+                }
+                groupsById.putIfAbsent(groupId, groupId.equals(role.getId()) ? role : new OAuthGroup(groupId, groupId, role.getType()));
+                members.computeIfAbsent(groupId, ignored -> new HashSet<>());
+                keptRoles.add(role);
+            }
+            directoryClient.fetchMembers(keptRoles).forEach((roleId, userIds) -> {
+                Set<String> groupMembers = members.get(roleMapper.map(roleId));
+                if (groupMembers != null) {
+                    groupMembers.addAll(userIds);
+                }
+            });
+            List<Group> groups = List.copyOf(groupsById.values());
+            index = new DirectoryIndex(users, groups, members);
+            LOGGER.log(Level.FINE, () -> "Loaded " + users.size() + " users and " + groups.size() + " groups into the identity directory");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Refreshing the identity directory failed, keeping previous state", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+
+/**
+ * Enables the {@link IdentityDirectory} if {@code application.directory.enabled} is set. Point {@code application.directory.admin-uri} to a local stub
+ * of the Keycloak admin API to run without a Keycloak.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.directory", name = "enabled", havingValue = "true")
+public class IdentityDirectoryConfiguration {
+
+    @Bean
+    public DirectoryClient directoryClient(ClientRegistrationRepository clientRegistrationRepository, ApplicationProperties applicationProperties) {
+        ApplicationProperties.Directory properties = applicationProperties.getDirectory();
+        return new KeycloakDirectoryClient(
+            properties.getAdminUri(),
+            clientRegistrationRepository.findByRegistrationId(applicationProperties.getRegistration()),
+            properties.getPageSize(),
+            properties.getTimeout(),
+            applicationProperties.getGroupMapping().getClients()
+        );
+    }
+
+    @Bean(destroyMethod = "close")
+    public IdentityDirectory identityDirectory(DirectoryClient directoryClient, RoleMapper roleMapper, ApplicationProperties applicationProperties) {
+        IdentityDirectory identityDirectory = new IdentityDirectory(directoryClient, roleMapper, applicationProperties.getDirectory().getRefreshInterval());
+        identityDirectory.start();
+        return identityDirectory;
+    }
+}
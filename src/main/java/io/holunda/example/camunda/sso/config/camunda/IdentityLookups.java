@@ -0,0 +1,61 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The users and groups resolved by id during one HTTP request, kept as request attribute. Rendering a task list page looks up the same assignees and
+ * candidate groups over and over, each in a command of its own, and each command opens a new {@link OAuthIdentityServiceProvider}. With this memo each
+ * id is resolved once per request, including ids that were not found.
+ */
+class IdentityLookups {
+
+    private static final String ATTRIBUTE = IdentityLookups.class.getName();
+
+    private final Map<String, Optional<User>> users = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Group>> groups = new ConcurrentHashMap<>();
+
+    /**
+     * @return the lookups of the current request or {@code null}, if the current thread doesn't serve a request, e.g. the job executor.
+     */
+    static IdentityLookups current() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        IdentityLookups lookups = (IdentityLookups) requestAttributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (lookups == null) {
+            lookups = new IdentityLookups();
+            requestAttributes.setAttribute(ATTRIBUTE, lookups, RequestAttributes.SCOPE_REQUEST);
+        }
+        return lookups;
+    }
+
+    /**
+     * @return the user if it was resolved before, an empty optional if it was not found, or {@code null} if it was not resolved yet.
+     */
+    Optional<User> getUser(String userId) {
+        return users.get(userId);
+    }
+
+    void putUser(String userId, User user) {
+        users.put(userId, Optional.ofNullable(user));
+    }
+
+    /**
+     * @return the group if it was resolved before, an empty optional if it was not found, or {@code null} if it was not resolved yet.
+     */
+    Optional<Group> getGroup(String groupId) {
+        return groups.get(groupId);
+    }
+
+    void putGroup(String groupId, Group group) {
+        groups.put(groupId, Optional.ofNullable(group));
+    }
+}
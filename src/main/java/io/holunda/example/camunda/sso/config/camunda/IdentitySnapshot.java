@@ -0,0 +1,97 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.rest.security.auth.AuthenticationResult;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable view of the identity of an authenticated user: the user itself, its groups and its tenants, indexed by id. It is derived once per
+ * authentication by {@link IdentitySnapshots} and answers the queries of {@link OAuthIdentityServiceProvider} without walking the authorities and
+ * claims again.
+ */
+public class IdentitySnapshot {
+
+    private final User user;
+    private final Map<String, Group> groupsById;
+    private final List<Group> groups;
+    private final Map<String, Tenant> tenantsById;
+    private final List<Tenant> tenants;
+    private final List<String> groupIds;
+    private final List<String> tenantIds;
+    private volatile AuthenticationResult authenticationResult;
+
+    IdentitySnapshot(User user, List<Group> groups, List<Tenant> tenants) {
+        this.user = user;
+        this.groupsById = index(groups, Group::getId);
+        this.groups = List.copyOf(groupsById.values());
+        this.groupIds = List.copyOf(groupsById.keySet());
+        this.tenantsById = index(tenants, Tenant::getId);
+        this.tenants = List.copyOf(tenantsById.values());
+        this.tenantIds = List.copyOf(tenantsById.keySet());
+    }
+
+    private static <T> Map<String, T> index(List<T> entries, Function<T, String> id) {
+        Map<String, T> index = new LinkedHashMap<>();
+        entries.forEach(entry -> index.putIfAbsent(id.apply(entry), entry));
+        return Collections.unmodifiableMap(index);
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Group getGroup(String groupId) {
+        return groupId != null ? groupsById.get(groupId) : null;
+    }
+
+    public boolean isMemberOf(String groupId) {
+        return groupId != null && groupsById.containsKey(groupId);
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    public List<String> getGroupIds() {
+        return groupIds;
+    }
+
+    public Tenant getTenant(String tenantId) {
+        return tenantId != null ? tenantsById.get(tenantId) : null;
+    }
+
+    public boolean isTenantMember(String tenantId) {
+        return tenantId != null && tenantsById.containsKey(tenantId);
+    }
+
+    public List<Tenant> getTenants() {
+        return tenants;
+    }
+
+    public List<String> getTenantIds() {
+        return tenantIds;
+    }
+
+    /**
+     * @param name the name of the authenticated principal, which may differ from the user id depending on the registration's user name attribute.
+     * @return the result of camunda's container based authentication for this identity. It is built once and shared by all requests of the
+     * authentication, so it must not be modified.
+     */
+    public AuthenticationResult getAuthenticationResult(String name) {
+        AuthenticationResult result = authenticationResult;
+        if (result == null || !name.equals(result.getAuthenticatedUser())) {
+            result = AuthenticationResult.successful(name);
+            result.setGroups(groupIds);
+            result.setTenants(tenantIds);
+            authenticationResult = result;
+        }
+        return result;
+    }
+}
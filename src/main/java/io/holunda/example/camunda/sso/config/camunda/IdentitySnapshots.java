@@ -0,0 +1,129 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthGroup;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthTenant;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthUser;
+import org.apache.commons.lang3.StringUtils;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor.SPRING_ROLE_PREFIX;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Derives the {@link IdentitySnapshot} of an authenticated user, both for users logged in to the webapps and for bearer tokens (JWTs or introspected
+ * opaque tokens) of the REST API.
+ * Snapshots are attached to the principal object of the authentication (weakly, by identity), so they are built once per login or token and released
+ * together with the authentication.<br>
+ * <br>
+ * Every user a snapshot is built for is remembered in {@link KnownUsers}.<br>
+ * <br>
+ * The groups are the roles of the user as mapped by the {@link RoleMapper}, computed once per distinct authority list.<br>
+ * <br>
+ * The tenants of the user are read from the claim configured as {@code application.tenant-claim}, which may contain a list of tenant ids or a single
+ * comma separated string.
+ */
+@Component
+public class IdentitySnapshots {
+
+    private static final long MAX_SNAPSHOTS = 100_000;
+    private static final long MAX_GROUP_LISTS = 10_000;
+
+    private final Cache<Object, IdentitySnapshot> snapshots = Caffeine.newBuilder()
+                                                                      .weakKeys()
+                                                                      .maximumSize(MAX_SNAPSHOTS)
+                                                                      .build();
+    // the groups of an authority list, which AuthorityRegistry shares between all tokens with the same roles
+    private final Cache<Collection<? extends GrantedAuthority>, List<Group>> groups = Caffeine.newBuilder()
+                                                                                           .weakKeys()
+                                                                                           .maximumSize(MAX_GROUP_LISTS)
+                                                                                           .build();
+    private final String tenantClaim;
+    private final RoleMapper roleMapper;
+    private final KnownUsers knownUsers;
+
+    public IdentitySnapshots(ApplicationProperties applicationProperties, RoleMapper roleMapper, KnownUsers knownUsers) {
+        this.tenantClaim = applicationProperties.getTenantClaim();
+        this.roleMapper = roleMapper;
+        this.knownUsers = knownUsers;
+    }
+
+    /**
+     * @return the snapshot of the user authenticated on the current thread or {@code null}, if there is no user logged in via OAuth2.
+     */
+    public IdentitySnapshot current() {
+        return of(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    /**
+     * @return the snapshot of the given principal or {@code null}, if it is not an OAuth2 authentication.
+     */
+    public IdentitySnapshot of(Principal principal) {
+        if (principal instanceof OAuth2AuthenticationToken) {
+            OAuth2User user = ((OAuth2AuthenticationToken) principal).getPrincipal();
+            return snapshots.get(user, ignored -> createSnapshot(user.getAttributes(), user.getAuthorities()));
+        } else if (principal instanceof JwtAuthenticationToken) {
+            JwtAuthenticationToken token = (JwtAuthenticationToken) principal;
+            return snapshots.get(token.getToken(), ignored -> createSnapshot(token.getTokenAttributes(), token.getAuthorities()));
+        } else if (principal instanceof BearerTokenAuthentication) {
+            // an introspected opaque token, see CachingOpaqueTokenAuthenticationManager
+            BearerTokenAuthentication token = (BearerTokenAuthentication) principal;
+            return snapshots.get(token.getPrincipal(), ignored -> createSnapshot(token.getTokenAttributes(), token.getAuthorities()));
+        }
+        return null;
+    }
+
+    private IdentitySnapshot createSnapshot(Map<String, Object> claims, Collection<? extends GrantedAuthority> authorities) {
+        String userId = (String) claims.get("sub");
+        OAuthUser oAuthUser = new OAuthUser(
+            userId,
+            (String) claims.getOrDefault("given_name", userId),
+            (String) claims.getOrDefault("family_name", userId),
+            (String) claims.getOrDefault("email", userId)
+        );
+        if (userId != null) {
+            knownUsers.remember(oAuthUser);
+        }
+        List<Group> groups = this.groups.get(authorities, this::createGroups);
+        List<Tenant> tenants = tenantIds(claims).stream()
+                                                .map(tenantId -> new OAuthTenant(tenantId, tenantId))
+                                                .collect(toList());
+        return new IdentitySnapshot(oAuthUser, groups, tenants);
+    }
+
+    private List<Group> createGroups(Collection<? extends GrantedAuthority> authorities) {
+        List<String> roles = authorities.stream()
+                                        .map(GrantedAuthority::getAuthority)
+                                        .map(role -> StringUtils.removeStart(role, SPRING_ROLE_PREFIX))
+                                        .collect(toList());
+        return roleMapper.mapAll(roles).stream()
+                         .map(group -> new OAuthGroup(group, group, "oauth"))
+                         .collect(toList());
+    }
+
+    private List<String> tenantIds(Map<String, Object> claims) {
+        Object tenants = tenantClaim != null ? claims.get(tenantClaim) : null;
+        if (tenants instanceof Collection) {
+            return ((Collection<?>) tenants).stream().map(String::valueOf).collect(toList());
+        } else if (tenants instanceof String) {
+            return Arrays.stream(((String) tenants).split(",")).map(String::trim).filter(tenant -> !tenant.isEmpty()).collect(toList());
+        }
+        return List.of();
+    }
+}
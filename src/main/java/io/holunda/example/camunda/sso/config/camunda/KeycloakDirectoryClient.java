@@ -0,0 +1,226 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthGroup;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthUser;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@link DirectoryClient} for the Keycloak admin REST API. Groups are the realm roles and the client roles (as {@code client:role}) of the realm, just
+ * like the groups {@code GrantedAuthoritiesExtractor} derives from an access token. The API is called with a token obtained via client credentials grant
+ * for the configured client registration, whose service account needs the {@code view-users} and {@code view-clients} roles of {@code realm-management}.
+ * <br>
+ * Memberships only contain direct role assignments, not roles inherited via composite roles or Keycloak groups. The admin API has no bulk endpoint
+ * for them, so they are read from whichever side needs fewer calls: the users endpoint of every role, or the role mappings of every user. Roles of
+ * clients that the group mapping drops ({@code application.group-mapping.clients}) aren't read at all.
+ *
+ * @see io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor
+ */
+public class KeycloakDirectoryClient implements DirectoryClient {
+
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> LIST_OF_OBJECTS = new ParameterizedTypeReference<>() {
+    };
+    private static final ParameterizedTypeReference<Map<String, Object>> OBJECT = new ParameterizedTypeReference<>() {
+    };
+    private static final String CLIENT_ROLE_SEPARATOR = ":";
+    private static final String GROUP_TYPE = "oauth";
+
+    private final RestTemplate restTemplate;
+    private final String adminUri;
+    private final ClientRegistration clientRegistration;
+    private final int pageSize;
+    private final Set<String> clients;
+
+    // ids of the clients by clientId, filled while fetching the groups
+    private final Map<String, String> clientIds = new HashMap<>();
+    // ids of the users, filled while fetching the users
+    private final List<String> userIds = new ArrayList<>();
+
+    private String accessToken;
+    private Instant accessTokenExpiresAt = Instant.EPOCH;
+
+    /**
+     * @param clients the clients whose roles are read, all clients if empty.
+     */
+    public KeycloakDirectoryClient(String adminUri, ClientRegistration clientRegistration, int pageSize, Duration timeout, Set<String> clients) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) timeout.toMillis());
+        requestFactory.setReadTimeout((int) timeout.toMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.adminUri = adminUri;
+        this.clientRegistration = clientRegistration;
+        this.pageSize = pageSize;
+        this.clients = clients;
+    }
+
+    @Override
+    public List<User> fetchUsers() {
+        List<User> users = new ArrayList<>();
+        fetchPaged(adminUri + "/users?briefRepresentation=true", user -> {
+            String id = (String) user.get("id");
+            return new OAuthUser(
+                id,
+                (String) user.getOrDefault("firstName", id),
+                (String) user.getOrDefault("lastName", id),
+                (String) user.getOrDefault("email", id)
+            );
+        }, users);
+        userIds.clear();
+        users.forEach(user -> userIds.add(user.getId()));
+        return users;
+    }
+
+    @Override
+    public List<Group> fetchGroups() {
+        List<Group> groups = new ArrayList<>();
+        for (Map<String, Object> role : get(adminUri + "/roles")) {
+            String name = (String) role.get("name");
+            groups.add(new OAuthGroup(name, name, GROUP_TYPE));
+        }
+        for (Map<String, Object> client : get(adminUri + "/clients")) {
+            String clientId = (String) client.get("clientId");
+            if (!clients.isEmpty() && !clients.contains(clientId)) {
+                continue;
+            }
+            clientIds.put(clientId, (String) client.get("id"));
+            for (Map<String, Object> role : get(adminUri + "/clients/" + client.get("id") + "/roles")) {
+                String id = clientId + CLIENT_ROLE_SEPARATOR + role.get("name");
+                groups.add(new OAuthGroup(id, id, GROUP_TYPE));
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public Map<String, Set<String>> fetchMembers(Collection<Group> groups) {
+        Map<String, Set<String>> members = new HashMap<>();
+        if (groups.size() <= userIds.size()) {
+            for (Group group : groups) {
+                members.put(group.getId(), fetchRoleMembers(group.getId()));
+            }
+            return members;
+        }
+
+        groups.forEach(group -> members.put(group.getId(), new HashSet<>()));
+        for (String userId : userIds) {
+            for (String role : fetchRoleMappings(userId)) {
+                Set<String> roleMembers = members.get(role);
+                if (roleMembers != null) {
+                    roleMembers.add(userId);
+                }
+            }
+        }
+        return members;
+    }
+
+    // the realm and client roles assigned to the user, in one call
+    @SuppressWarnings("unchecked")
+    private List<String> fetchRoleMappings(String userId) {
+        Map<String, Object> mappings = getObject(UriComponentsBuilder.fromUriString(adminUri).pathSegment("users", userId, "role-mappings").toUriString());
+        List<String> roles = new ArrayList<>();
+        List<Map<String, Object>> realmMappings = (List<Map<String, Object>>) mappings.get("realmMappings");
+        if (realmMappings != null) {
+            realmMappings.forEach(role -> roles.add((String) role.get("name")));
+        }
+        Map<String, Map<String, Object>> clientMappings = (Map<String, Map<String, Object>>) mappings.get("clientMappings");
+        if (clientMappings != null) {
+            clientMappings.forEach((clientId, client) -> {
+                List<Map<String, Object>> clientRoles = (List<Map<String, Object>>) client.get("mappings");
+                if (clientRoles != null) {
+                    clientRoles.forEach(role -> roles.add(clientId + CLIENT_ROLE_SEPARATOR + role.get("name")));
+                }
+            });
+        }
+        return roles;
+    }
+
+    private Set<String> fetchRoleMembers(String groupId) {
+        int separator = groupId.indexOf(CLIENT_ROLE_SEPARATOR);
+        String uri;
+        if (separator < 0) {
+            uri = UriComponentsBuilder.fromUriString(adminUri).pathSegment("roles", groupId, "users").toUriString();
+        } else {
+            String clientId = clientIds.get(groupId.substring(0, separator));
+            if (clientId == null) {
+                return Set.of();
+            }
+            uri = UriComponentsBuilder.fromUriString(adminUri)
+                                      .pathSegment("clients", clientId, "roles", groupId.substring(separator + 1), "users")
+                                      .toUriString();
+        }
+        Set<String> members = new HashSet<>();
+        fetchPaged(uri, user -> (String) user.get("id"), members);
+        return members;
+    }
+
+    private <T> void fetchPaged(String uri, Function<Map<String, Object>, T> mapper, Collection<T> target) {
+        int first = 0;
+        List<Map<String, Object>> page;
+        do {
+            page = get(UriComponentsBuilder.fromUriString(uri).queryParam("first", first).queryParam("max", pageSize).toUriString());
+            page.forEach(entry -> target.add(mapper.apply(entry)));
+            first += pageSize;
+        } while (page.size() == pageSize);
+    }
+
+    private Map<String, Object> getObject(String uri) {
+        Map<String, Object> body = restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(authorizationHeaders()), OBJECT).getBody();
+        return body != null ? body : Map.of();
+    }
+
+    private List<Map<String, Object>> get(String uri) {
+        List<Map<String, Object>> body = restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(authorizationHeaders()), LIST_OF_OBJECTS).getBody();
+        return body != null ? body : List.of();
+    }
+
+    private HttpHeaders authorizationHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(getAccessToken());
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getAccessToken() {
+        if (accessToken == null || Instant.now().isAfter(accessTokenExpiresAt)) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+            headers.setBasicAuth(clientRegistration.getClientId(), clientRegistration.getClientSecret());
+            MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+            form.add("grant_type", "client_credentials");
+
+            Map<String, Object> response = restTemplate.postForObject(
+                clientRegistration.getProviderDetails().getTokenUri(), new HttpEntity<>(form, headers), Map.class);
+            if (response == null || response.get("access_token") == null) {
+                throw new IllegalStateException("No access token received for the directory client");
+            }
+            Number expiresIn = (Number) response.getOrDefault("expires_in", 60);
+            accessToken = (String) response.get("access_token");
+            // renew a little early so that the token doesn't expire during a refresh
+            accessTokenExpiresAt = Instant.now().plusSeconds(Math.max(expiresIn.longValue() - 10, 0));
+        }
+        return accessToken;
+    }
+}
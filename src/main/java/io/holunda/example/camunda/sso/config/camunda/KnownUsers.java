@@ -0,0 +1,63 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.camunda.bpm.engine.identity.User;
+import org.springframework.stereotype.Component;
+
+/**
+ * The users that logged in or sent a token to this node recently, so that e.g. the assignees and start users shown in history views resolve even
+ * without the {@link IdentityDirectory}. Ids that couldn't be resolved are remembered, too, for a much shorter time, so that repeated lookups of
+ * unknown users don't repeat the lookup. A login of an unknown user ends that immediately.
+ */
+@Component
+public class KnownUsers {
+
+    private final Cache<String, User> users;
+    private final Cache<String, Boolean> unknownUserIds;
+
+    public KnownUsers(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.UserCache properties = applicationProperties.getUserCache();
+        this.users = Caffeine.newBuilder()
+                             .maximumSize(properties.getMaximumSize())
+                             .expireAfterWrite(properties.getTimeToLive())
+                             .recordStats()
+                             .build();
+        this.unknownUserIds = Caffeine.newBuilder()
+                                      .maximumSize(properties.getMaximumSize())
+                                      .expireAfterWrite(properties.getUnknownTimeToLive())
+                                      .recordStats()
+                                      .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "sso.users.known");
+        CaffeineCacheMetrics.monitor(meterRegistry, unknownUserIds, "sso.users.unknown");
+    }
+
+    /**
+     * Remembers an authenticated user.
+     */
+    public void remember(User user) {
+        users.put(user.getId(), user);
+        unknownUserIds.invalidate(user.getId());
+    }
+
+    /**
+     * @return the user if it was seen recently, otherwise {@code null}.
+     */
+    public User get(String userId) {
+        return users.getIfPresent(userId);
+    }
+
+    /**
+     * @return whether the user id couldn't be resolved recently.
+     */
+    public boolean isUnknown(String userId) {
+        return unknownUserIds.getIfPresent(userId) != null;
+    }
+
+    public void markUnknown(String userId) {
+        unknownUserIds.put(userId, Boolean.TRUE);
+    }
+}
@@ -1,9 +1,11 @@
 package io.holunda.example.camunda.sso.config.camunda;
 
 import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.rest.security.auth.AuthenticationProvider;
 import org.camunda.bpm.engine.rest.security.auth.AuthenticationResult;
+import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -12,12 +14,28 @@ import java.security.Principal;
 import static java.util.Collections.emptyList;
 
 /**
- * Similar to camunda's {@link org.camunda.bpm.engine.rest.security.auth.impl.ContainerBasedAuthenticationProvider} but also adds SSO roles to the authentication result.
+ * Similar to camunda's {@link org.camunda.bpm.engine.rest.security.auth.impl.ContainerBasedAuthenticationProvider} but also adds SSO roles and tenants
+ * to the authentication result. The result of an OAuth2 authentication is built once with its {@link IdentitySnapshot} and reused for all of its
+ * requests.<br>
+ * <br>
+ * Instances are created by camunda's filter, not by spring, so the spring managed components are looked up from the web application context.
  */
 public class OAuthContainerBasedAuthenticationProvider implements AuthenticationProvider {
 
+    private volatile IdentitySnapshots identitySnapshots;
+    private volatile SsoMetrics ssoMetrics;
+    private volatile RoleMapper roleMapper;
+
     @Override
     public AuthenticationResult extractAuthenticatedUser(HttpServletRequest request, ProcessEngine engine) {
+        SsoMetrics metrics = getSsoMetrics(request);
+        long start = metrics.start();
+        AuthenticationResult result = authenticate(request);
+        metrics.containerAuthentication(start, result.isAuthenticated());
+        return result;
+    }
+
+    private AuthenticationResult authenticate(HttpServletRequest request) {
         Principal principal = request.getUserPrincipal();
 
         if (principal == null) {
@@ -29,8 +47,13 @@ public class OAuthContainerBasedAuthenticationProvider implements Authentication
             return AuthenticationResult.unsuccessful();
         }
 
+        IdentitySnapshot snapshot = getIdentitySnapshots(request).of(principal);
+        if (snapshot != null) {
+            return snapshot.getAuthenticationResult(name);
+        }
+
         AuthenticationResult result = AuthenticationResult.successful(name);
-        result.setGroups(GrantedAuthoritiesExtractor.extractRoles(principal));
+        result.setGroups(getRoleMapper(request).mapAll(GrantedAuthoritiesExtractor.extractRoles(principal)));
         result.setTenants(emptyList());
         return result;
     }
@@ -39,4 +62,29 @@ public class OAuthContainerBasedAuthenticationProvider implements Authentication
     public void augmentResponseByAuthenticationChallenge(HttpServletResponse response, ProcessEngine engine) {
         // noop
     }
+
+    private IdentitySnapshots getIdentitySnapshots(HttpServletRequest request) {
+        if (identitySnapshots == null) {
+            identitySnapshots = getBean(request, IdentitySnapshots.class);
+        }
+        return identitySnapshots;
+    }
+
+    private SsoMetrics getSsoMetrics(HttpServletRequest request) {
+        if (ssoMetrics == null) {
+            ssoMetrics = getBean(request, SsoMetrics.class);
+        }
+        return ssoMetrics;
+    }
+
+    private RoleMapper getRoleMapper(HttpServletRequest request) {
+        if (roleMapper == null) {
+            roleMapper = getBean(request, RoleMapper.class);
+        }
+        return roleMapper;
+    }
+
+    private static <T> T getBean(HttpServletRequest request, Class<T> type) {
+        return WebApplicationContextUtils.getRequiredWebApplicationContext(request.getServletContext()).getBean(type);
+    }
 }
@@ -1,6 +1,7 @@
 package io.holunda.example.camunda.sso.config.camunda;
 
-import org.apache.commons.lang3.StringUtils;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics.QueryType;
 import org.camunda.bpm.engine.identity.Group;
 import org.camunda.bpm.engine.identity.GroupQuery;
 import org.camunda.bpm.engine.identity.NativeUserQuery;
@@ -10,29 +11,57 @@ import org.camunda.bpm.engine.identity.User;
 import org.camunda.bpm.engine.identity.UserQuery;
 import org.camunda.bpm.engine.impl.GroupQueryImpl;
 import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.TenantQueryImpl;
 import org.camunda.bpm.engine.impl.UserQueryImpl;
 import org.camunda.bpm.engine.impl.identity.ReadOnlyIdentityProvider;
 import org.camunda.bpm.engine.impl.interceptor.CommandContext;
 import org.camunda.bpm.engine.impl.persistence.AbstractManager;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
-import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
 
-import static io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor.SPRING_ROLE_PREFIX;
-import static java.util.stream.Collectors.toList;
+import static io.holunda.example.camunda.sso.config.spring.SsoMetrics.QueryOperation.COUNT;
+import static io.holunda.example.camunda.sso.config.spring.SsoMetrics.QueryOperation.LIST;
+import static io.holunda.example.camunda.sso.config.spring.SsoMetrics.QueryOperation.SINGLE;
 
 /**
- * This Identity Provider returns only the currently logged-in user's data. It is required for the camunda apps to work properly with OAuth
+ * This Identity Provider returns the currently logged-in user's data. It is required for the camunda apps to work properly with OAuth
  * login. Only the necessary methods of the interface are implemented, most methods just return null or empty things.
+ * The user, groups and tenants are taken from the {@link IdentitySnapshot} of the current authentication. If the {@link IdentityDirectory} is enabled, all other
+ * users and groups of the identity provider are resolved from it.
+ * Other users that logged in to this node recently are known from {@link KnownUsers}.
+ * Lookups by id are answered by the batch methods {@link #findUsersByIds(Collection)} and {@link #findGroupsByIds(Collection)}, which remember their
+ * results for the current HTTP request.
  **/
 public class OAuthIdentityServiceProvider extends AbstractManager implements ReadOnlyIdentityProvider {
 
+    private static final Page FIRST = new Page(0, 1);
+
+    private final IdentitySnapshots identitySnapshots;
+    private final IdentityDirectory identityDirectory;
+    private final KnownUsers knownUsers;
+    private final SsoMetrics ssoMetrics;
+
+    public OAuthIdentityServiceProvider(
+        IdentitySnapshots identitySnapshots,
+        IdentityDirectory identityDirectory,
+        KnownUsers knownUsers,
+        SsoMetrics ssoMetrics
+    ) {
+        this.identitySnapshots = identitySnapshots;
+        this.identityDirectory = identityDirectory;
+        this.knownUsers = knownUsers;
+        this.ssoMetrics = ssoMetrics;
+    }
+
     @Override
     public User findUserById(String userId) {
         return createUserQuery().userId(userId).singleResult();
@@ -49,64 +78,229 @@ public class OAuthIdentityServiceProvider extends AbstractManager implements Rea
     }
 
 
-    private User single(OAuthUserQueryImpl oAuthUserQuery) {
+    /**
+     * Resolves users by id in one pass over the logged-in user and the directory. Within an HTTP request, every id is resolved only once, see
+     * {@link IdentityLookups}.
+     *
+     * @return the users found, by id.
+     */
+    public Map<String, User> findUsersByIds(Collection<String> userIds) {
+        IdentityLookups lookups = IdentityLookups.current();
+        Map<String, User> found = new LinkedHashMap<>();
+        IdentitySnapshot snapshot = null;
+        DirectoryIndex index = null;
+        boolean resolved = false;
+        for (String userId : userIds) {
+            Optional<User> memoized = lookups != null ? lookups.getUser(userId) : null;
+            User user;
+            if (memoized != null) {
+                user = memoized.orElse(null);
+            } else {
+                if (!resolved) {
+                    snapshot = identitySnapshots.current();
+                    index = identityDirectory != null ? identityDirectory.getIndex() : null;
+                    resolved = true;
+                }
+                user = resolveUser(userId, snapshot, index);
+                if (lookups != null) {
+                    lookups.putUser(userId, user);
+                }
+            }
+            if (user != null) {
+                found.put(userId, user);
+            }
+        }
+        return found;
+    }
 
-        DefaultOAuth2User user = getAuthorizedUser();
-        if (user != null) {
-            Map<String, Object> claims = user.getAttributes();
-            String userId = (String) claims.get("sub");
-            return new OAuthUser(
-                userId,
-                (String) claims.getOrDefault("given_name", userId),
-                (String) claims.getOrDefault("family_name", userId),
-                (String) claims.getOrDefault("email", userId)
-            );
+    // the directory is consulted before the unknown ids, which may have been remembered before a refresh of the directory added the user
+    private User resolveUser(String userId, IdentitySnapshot snapshot, DirectoryIndex index) {
+        if (snapshot != null && userId.equals(snapshot.getUser().getId())) {
+            return snapshot.getUser();
+        }
+        User user = index != null ? index.getUser(userId) : null;
+        if (user != null || knownUsers.isUnknown(userId)) {
+            return user;
+        }
+        user = knownUsers.get(userId);
+        // until the directory has been loaded, an id missing from it says nothing about the user
+        if (user == null && index != DirectoryIndex.EMPTY) {
+            knownUsers.markUnknown(userId);
+        }
+        return user;
+    }
+
+    /**
+     * Resolves groups by id in one pass over the groups of the logged-in user and the directory. Within an HTTP request, every id is resolved only once,
+     * see {@link IdentityLookups}.
+     *
+     * @return the groups found, by id.
+     */
+    public Map<String, Group> findGroupsByIds(Collection<String> groupIds) {
+        IdentityLookups lookups = IdentityLookups.current();
+        Map<String, Group> found = new LinkedHashMap<>();
+        IdentitySnapshot snapshot = null;
+        DirectoryIndex index = null;
+        boolean resolved = false;
+        for (String groupId : groupIds) {
+            Optional<Group> memoized = lookups != null ? lookups.getGroup(groupId) : null;
+            Group group;
+            if (memoized != null) {
+                group = memoized.orElse(null);
+            } else {
+                if (!resolved) {
+                    snapshot = identitySnapshots.current();
+                    index = identityDirectory != null ? identityDirectory.getIndex() : null;
+                    resolved = true;
+                }
+                // like single(OAuthGroupQueryImpl), the groups of the logged-in user take precedence over the directory
+                group = snapshot != null && snapshot.isMemberOf(groupId) ? snapshot.getGroup(groupId) : index != null ? index.getGroup(groupId) : null;
+                if (lookups != null) {
+                    lookups.putGroup(groupId, group);
+                }
+            }
+            if (group != null) {
+                found.put(groupId, group);
+            }
+        }
+        return found;
+    }
+
+    private User single(OAuthUserQueryImpl oAuthUserQuery) {
+        if (OAuthQueryEvaluator.isIdLookup(oAuthUserQuery)) {
+            return first(list(oAuthUserQuery, FIRST));
+        }
+        // the logged-in user is known from the token, which is more up-to-date than the directory, but only if it matches all filters
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (snapshot != null && matches(snapshot, oAuthUserQuery)) {
+            return snapshot.getUser();
+        }
+        if (identityDirectory != null) {
+            return first(identityDirectory.getIndex().findUsers(oAuthUserQuery, FIRST));
         }
         return null;
     }
 
+    private static boolean matches(IdentitySnapshot snapshot, OAuthUserQueryImpl oAuthUserQuery) {
+        Predicate<User> filter = OAuthQueryEvaluator.userFilter(
+            oAuthUserQuery,
+            ignored -> Set.copyOf(snapshot.getGroupIds()),
+            ignored -> Set.copyOf(snapshot.getTenantIds())
+        );
+        return filter == null || filter.test(snapshot.getUser());
+    }
+
     private Group single(OAuthGroupQueryImpl oAuthGroupQuery) {
-        return list(oAuthGroupQuery)
-            .stream()
-            .filter(group -> group.getId().equals(oAuthGroupQuery.getId()))
-            .findFirst().orElse(null);
+        if (oAuthGroupQuery.getIds() == null && OAuthQueryEvaluator.isIdLookup(oAuthGroupQuery)) {
+            return findGroupsByIds(List.of(oAuthGroupQuery.getId())).get(oAuthGroupQuery.getId());
+        }
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (identityDirectory == null || (snapshot != null && snapshot.isMemberOf(oAuthGroupQuery.getId()))) {
+            return first(listCurrentUserGroups(snapshot, oAuthGroupQuery, FIRST));
+        }
+        return first(identityDirectory.getIndex().findGroups(oAuthGroupQuery, FIRST));
     }
 
-    private List<Group> list(OAuthGroupQueryImpl oAuthGroupQuery) {
-        DefaultOAuth2User user = getAuthorizedUser();
-        if (user != null) {
-            return user.getAuthorities().stream()
-                       .map(GrantedAuthority::getAuthority)
-                       .map(role -> StringUtils.removeStart(role, SPRING_ROLE_PREFIX))
-                       .map(role -> new OAuthGroup(role, role, "oauth"))
-                       .collect(toList());
+    private List<Group> list(OAuthGroupQueryImpl oAuthGroupQuery, Page page) {
+        if (OAuthQueryEvaluator.isIdLookup(oAuthGroupQuery)) {
+            return OAuthQueryEvaluator.list(
+                findGroupsByIds(ids(oAuthGroupQuery.getId(), oAuthGroupQuery.getIds())).values(),
+                OAuthQueryEvaluator.groupFilter(oAuthGroupQuery, ignored -> Set.of()),
+                OAuthQueryEvaluator.groupOrder(oAuthGroupQuery),
+                page
+            );
         }
-        return Collections.emptyList();
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (identityDirectory != null && !isCurrentUser(snapshot, oAuthGroupQuery.getUserId())) {
+            return identityDirectory.getIndex().findGroups(oAuthGroupQuery, page);
+        }
+        // the groups of the logged-in user are known from the token, which is more up-to-date than the directory
+        return listCurrentUserGroups(snapshot, oAuthGroupQuery, page);
     }
 
-    private List<User> list(OAuthUserQueryImpl oAuthUserQuery) {
+    private List<User> list(OAuthUserQueryImpl oAuthUserQuery, Page page) {
+        if (OAuthQueryEvaluator.isIdLookup(oAuthUserQuery)) {
+            return OAuthQueryEvaluator.list(
+                findUsersByIds(ids(oAuthUserQuery.getId(), oAuthUserQuery.getIds())).values(),
+                OAuthQueryEvaluator.userFilter(oAuthUserQuery, ignored -> Set.of(), ignored -> Set.of()),
+                OAuthQueryEvaluator.userOrder(oAuthUserQuery),
+                page
+            );
+        }
+        if (identityDirectory != null) {
+            return identityDirectory.getIndex().findUsers(oAuthUserQuery, page);
+        }
         return Collections.emptyList();
     }
 
+    // id lookups are counted from the same candidates as list(OAuthUserQueryImpl, Page), so count and list always agree
     private long count(OAuthUserQueryImpl oAuthUserQuery) {
-        return list(oAuthUserQuery).size();
+        if (OAuthQueryEvaluator.isIdLookup(oAuthUserQuery)) {
+            return OAuthQueryEvaluator.count(
+                findUsersByIds(ids(oAuthUserQuery.getId(), oAuthUserQuery.getIds())).values(),
+                OAuthQueryEvaluator.userFilter(oAuthUserQuery, ignored -> Set.of(), ignored -> Set.of())
+            );
+        }
+        if (identityDirectory != null) {
+            return identityDirectory.getIndex().countUsers(oAuthUserQuery);
+        }
+        return 0;
     }
 
-    private long count(OAuthGroupQueryImpl oAuthGroupQuery) { return list(oAuthGroupQuery).size(); }
+    private long count(OAuthGroupQueryImpl oAuthGroupQuery) {
+        if (OAuthQueryEvaluator.isIdLookup(oAuthGroupQuery)) {
+            return OAuthQueryEvaluator.count(
+                findGroupsByIds(ids(oAuthGroupQuery.getId(), oAuthGroupQuery.getIds())).values(),
+                OAuthQueryEvaluator.groupFilter(oAuthGroupQuery, ignored -> Set.of())
+            );
+        }
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (identityDirectory != null && !isCurrentUser(snapshot, oAuthGroupQuery.getUserId())) {
+            return identityDirectory.getIndex().countGroups(oAuthGroupQuery);
+        }
+        if (snapshot == null) {
+            return 0;
+        }
+        return OAuthQueryEvaluator.count(currentUserGroupCandidates(snapshot, oAuthGroupQuery), currentUserGroupFilter(snapshot, oAuthGroupQuery));
+    }
 
-    private DefaultOAuth2User getAuthorizedUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication instanceof OAuth2AuthenticationToken && authentication.getPrincipal() instanceof DefaultOAuth2User) {
-            return ((DefaultOAuth2User) authentication.getPrincipal());
-        } else {
-            return null;
+    private static List<Group> listCurrentUserGroups(IdentitySnapshot snapshot, OAuthGroupQueryImpl oAuthGroupQuery, Page page) {
+        if (snapshot == null) {
+            return Collections.emptyList();
         }
+        return OAuthQueryEvaluator.list(
+            currentUserGroupCandidates(snapshot, oAuthGroupQuery),
+            currentUserGroupFilter(snapshot, oAuthGroupQuery),
+            OAuthQueryEvaluator.groupOrder(oAuthGroupQuery),
+            page
+        );
+    }
+
+    private static Collection<Group> currentUserGroupCandidates(IdentitySnapshot snapshot, OAuthGroupQueryImpl oAuthGroupQuery) {
+        return OAuthQueryEvaluator.candidates(oAuthGroupQuery.getId(), oAuthGroupQuery.getIds(), snapshot::getGroup, snapshot.getGroups());
+    }
+
+    private static Predicate<Group> currentUserGroupFilter(IdentitySnapshot snapshot, OAuthGroupQueryImpl oAuthGroupQuery) {
+        // all groups of the snapshot have the logged-in user as their only known member
+        Set<String> members = Set.of(snapshot.getUser().getId());
+        return OAuthQueryEvaluator.groupFilter(oAuthGroupQuery, ignored -> members);
     }
 
+    private static boolean isCurrentUser(IdentitySnapshot snapshot, String userId) {
+        return snapshot != null && userId != null && userId.equals(snapshot.getUser().getId());
+    }
+
+    private static Collection<String> ids(String id, String[] ids) {
+        return id != null ? List.of(id) : new TreeSet<>(Arrays.asList(ids));
+    }
+
+    private static <T> T first(List<T> results) {
+        return results.isEmpty() ? null : results.get(0);
+    }
 
     @Override
     public NativeUserQuery createNativeUserQuery() {
-        return null;
+        throw new UnsupportedOperationException("Native user queries are not supported, users are read from the identity provider and not stored in the database");
     }
 
     @Override
@@ -131,17 +325,51 @@ public class OAuthIdentityServiceProvider extends AbstractManager implements Rea
 
     @Override
     public Tenant findTenantById(String tenantId) {
-        return null;
+        return createTenantQuery().tenantId(tenantId).singleResult();
     }
 
     @Override
     public TenantQuery createTenantQuery() {
-        return null;
+        return new OAuthTenantQueryImpl(this);
     }
 
     @Override
     public TenantQuery createTenantQuery(CommandContext commandContext) {
-        return null;
+        return new OAuthTenantQueryImpl(this);
+    }
+
+    private Tenant single(OAuthTenantQueryImpl oAuthTenantQuery) {
+        return first(list(oAuthTenantQuery, FIRST));
+    }
+
+    private List<Tenant> list(OAuthTenantQueryImpl oAuthTenantQuery, Page page) {
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (snapshot == null) {
+            return Collections.emptyList();
+        }
+        return OAuthQueryEvaluator.list(
+            tenantCandidates(snapshot, oAuthTenantQuery),
+            tenantFilter(snapshot, oAuthTenantQuery),
+            OAuthQueryEvaluator.tenantOrder(oAuthTenantQuery),
+            page
+        );
+    }
+
+    private long count(OAuthTenantQueryImpl oAuthTenantQuery) {
+        IdentitySnapshot snapshot = identitySnapshots.current();
+        if (snapshot == null) {
+            return 0;
+        }
+        return OAuthQueryEvaluator.count(tenantCandidates(snapshot, oAuthTenantQuery), tenantFilter(snapshot, oAuthTenantQuery));
+    }
+
+    private static Collection<Tenant> tenantCandidates(IdentitySnapshot snapshot, OAuthTenantQueryImpl oAuthTenantQuery) {
+        return OAuthQueryEvaluator.candidates(oAuthTenantQuery.getId(), oAuthTenantQuery.getIds(), snapshot::getTenant, snapshot.getTenants());
+    }
+
+    private static Predicate<Tenant> tenantFilter(IdentitySnapshot snapshot, OAuthTenantQueryImpl oAuthTenantQuery) {
+        Set<String> members = Set.of(snapshot.getUser().getId());
+        return OAuthQueryEvaluator.tenantFilter(oAuthTenantQuery, ignored -> members);
     }
 
 
@@ -155,17 +383,26 @@ public class OAuthIdentityServiceProvider extends AbstractManager implements Rea
 
         @Override
         public long executeCount(CommandContext commandContext) {
-            return oAuthIdentityServiceProvider.count(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            long count = oAuthIdentityServiceProvider.count(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.USER, COUNT);
+            return count;
         }
 
         @Override
         public List<User> executeList(CommandContext commandContext, Page page) {
-            return oAuthIdentityServiceProvider.list(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            List<User> results = oAuthIdentityServiceProvider.list(this, page);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.USER, LIST);
+            return results;
         }
 
         @Override
         public User singleResult() {
-            return oAuthIdentityServiceProvider.single(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            User result = oAuthIdentityServiceProvider.single(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.USER, SINGLE);
+            return result;
         }
     }
 
@@ -177,17 +414,59 @@ public class OAuthIdentityServiceProvider extends AbstractManager implements Rea
 
         @Override
         public long executeCount(CommandContext commandContext) {
-            return oAuthIdentityServiceProvider.count(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            long count = oAuthIdentityServiceProvider.count(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.GROUP, COUNT);
+            return count;
         }
 
         @Override
         public List<Group> executeList(CommandContext commandContext, Page page) {
-            return oAuthIdentityServiceProvider.list(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            List<Group> results = oAuthIdentityServiceProvider.list(this, page);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.GROUP, LIST);
+            return results;
         }
 
         @Override
         public Group singleResult() {
-            return oAuthIdentityServiceProvider.single(this);
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            Group result = oAuthIdentityServiceProvider.single(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.GROUP, SINGLE);
+            return result;
+        }
+    }
+
+    static class OAuthTenantQueryImpl extends TenantQueryImpl {
+
+        private final OAuthIdentityServiceProvider oAuthIdentityServiceProvider;
+
+        public OAuthTenantQueryImpl(OAuthIdentityServiceProvider oAuthIdentityServiceProvider) {
+            this.oAuthIdentityServiceProvider = oAuthIdentityServiceProvider;
+        }
+
+        @Override
+        public long executeCount(CommandContext commandContext) {
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            long count = oAuthIdentityServiceProvider.count(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.TENANT, COUNT);
+            return count;
+        }
+
+        @Override
+        public List<Tenant> executeList(CommandContext commandContext, Page page) {
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            List<Tenant> results = oAuthIdentityServiceProvider.list(this, page);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.TENANT, LIST);
+            return results;
+        }
+
+        @Override
+        public Tenant singleResult() {
+            long start = oAuthIdentityServiceProvider.ssoMetrics.start();
+            Tenant result = oAuthIdentityServiceProvider.single(this);
+            oAuthIdentityServiceProvider.ssoMetrics.identityQuery(start, QueryType.TENANT, SINGLE);
+            return result;
         }
     }
 
@@ -298,4 +577,35 @@ public class OAuthIdentityServiceProvider extends AbstractManager implements Rea
             throw new UnsupportedOperationException("Can't set group type");
         }
     }
+
+    static class OAuthTenant implements Tenant {
+
+        private final String id;
+        private final String name;
+
+        OAuthTenant(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public String getId() {
+            return this.id;
+        }
+
+        @Override
+        public void setId(String id) {
+            throw new UnsupportedOperationException("Can't set tenant id");
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException("Can't set tenant name");
+        }
+    }
 }
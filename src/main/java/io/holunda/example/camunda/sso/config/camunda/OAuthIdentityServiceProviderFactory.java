@@ -0,0 +1,42 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import org.camunda.bpm.engine.impl.interceptor.Session;
+import org.camunda.bpm.engine.impl.interceptor.SessionFactory;
+
+/**
+ * Opens an {@link OAuthIdentityServiceProvider} per command context. Replaces camunda's {@code GenericManagerFactory} so that the provider can be
+ * handed the spring managed components it needs.
+ */
+public class OAuthIdentityServiceProviderFactory implements SessionFactory {
+
+    private final IdentitySnapshots identitySnapshots;
+    private final IdentityDirectory identityDirectory;
+    private final KnownUsers knownUsers;
+    private final SsoMetrics ssoMetrics;
+
+    /**
+     * @param identityDirectory the directory of all users and groups, or {@code null} if only the logged-in user is known.
+     */
+    public OAuthIdentityServiceProviderFactory(
+        IdentitySnapshots identitySnapshots,
+        IdentityDirectory identityDirectory,
+        KnownUsers knownUsers,
+        SsoMetrics ssoMetrics
+    ) {
+        this.identitySnapshots = identitySnapshots;
+        this.identityDirectory = identityDirectory;
+        this.knownUsers = knownUsers;
+        this.ssoMetrics = ssoMetrics;
+    }
+
+    @Override
+    public Class<?> getSessionType() {
+        return OAuthIdentityServiceProvider.class;
+    }
+
+    @Override
+    public Session openSession() {
+        return new OAuthIdentityServiceProvider(identitySnapshots, identityDirectory, knownUsers, ssoMetrics);
+    }
+}
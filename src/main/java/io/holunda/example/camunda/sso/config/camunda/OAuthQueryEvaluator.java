@@ -0,0 +1,324 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.Tenant;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.Direction;
+import org.camunda.bpm.engine.impl.GroupQueryImpl;
+import org.camunda.bpm.engine.impl.GroupQueryProperty;
+import org.camunda.bpm.engine.impl.Page;
+import org.camunda.bpm.engine.impl.QueryOrderingProperty;
+import org.camunda.bpm.engine.impl.TenantQueryImpl;
+import org.camunda.bpm.engine.impl.TenantQueryProperty;
+import org.camunda.bpm.engine.impl.UserQueryImpl;
+import org.camunda.bpm.engine.impl.UserQueryProperty;
+import org.camunda.bpm.engine.query.QueryProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Evaluates camunda's {@link UserQueryImpl}, {@link GroupQueryImpl} and {@link TenantQueryImpl} against in-memory users and groups, for the {@link OAuthIdentityServiceProvider}
+ * query implementations. It applies the filters, the ordering and the paging of the query the same way the database backed queries do:
+ * <ul>
+ *     <li>Queries by id only look at the requested entries instead of scanning all candidates.</li>
+ *     <li>Counts never build result objects, and unfiltered counts are just the number of candidates.</li>
+ *     <li>Only the requested page is collected. Ordered pages are selected with a bounded heap, so the effort for the first pages of a large result is
+ *     not dominated by sorting it entirely.</li>
+ * </ul>
+ * Filters are {@code null} if the query doesn't restrict the candidates at all.
+ */
+final class OAuthQueryEvaluator {
+
+    private OAuthQueryEvaluator() {
+    }
+
+    /**
+     * @param groupsOfUser  returns the ids of the groups a user is member of, used for {@link UserQueryImpl#getGroupId()}.
+     * @param tenantsOfUser returns the ids of the tenants a user is member of, used for {@link UserQueryImpl#getTenantId()}.
+     */
+    static Predicate<User> userFilter(UserQueryImpl query, Function<String, Set<String>> groupsOfUser, Function<String, Set<String>> tenantsOfUser) {
+        Predicate<User> filter = null;
+        if (query.getId() != null) {
+            filter = and(filter, user -> query.getId().equals(user.getId()));
+        }
+        if (query.getIds() != null) {
+            List<String> ids = Arrays.asList(query.getIds());
+            filter = and(filter, user -> ids.contains(user.getId()));
+        }
+        filter = and(filter, query.getFirstName(), query.getFirstNameLike(), User::getFirstName);
+        filter = and(filter, query.getLastName(), query.getLastNameLike(), User::getLastName);
+        filter = and(filter, query.getEmail(), query.getEmailLike(), User::getEmail);
+        if (query.getGroupId() != null) {
+            filter = and(filter, user -> groupsOfUser.apply(user.getId()).contains(query.getGroupId()));
+        }
+        if (query.getTenantId() != null) {
+            filter = and(filter, user -> tenantsOfUser.apply(user.getId()).contains(query.getTenantId()));
+        }
+        return filter;
+    }
+
+    /**
+     * @return whether the query looks up users by {@link UserQueryImpl#getId() id} or {@link UserQueryImpl#getIds() ids} only, without further filters.
+     */
+    static boolean isIdLookup(UserQueryImpl query) {
+        return (query.getId() != null || query.getIds() != null)
+            && query.getFirstName() == null && query.getFirstNameLike() == null
+            && query.getLastName() == null && query.getLastNameLike() == null
+            && query.getEmail() == null && query.getEmailLike() == null
+            && query.getGroupId() == null && query.getTenantId() == null;
+    }
+
+    /**
+     * @param membersOfGroup returns the ids of the users that are member of a group, used for {@link GroupQueryImpl#getUserId()}.
+     */
+    static Predicate<Group> groupFilter(GroupQueryImpl query, Function<String, Set<String>> membersOfGroup) {
+        Predicate<Group> filter = null;
+        if (query.getId() != null) {
+            filter = and(filter, group -> query.getId().equals(group.getId()));
+        }
+        if (query.getIds() != null) {
+            List<String> ids = Arrays.asList(query.getIds());
+            filter = and(filter, group -> ids.contains(group.getId()));
+        }
+        filter = and(filter, query.getName(), query.getNameLike(), Group::getName);
+        if (query.getType() != null) {
+            filter = and(filter, group -> query.getType().equals(group.getType()));
+        }
+        if (query.getUserId() != null) {
+            filter = and(filter, group -> membersOfGroup.apply(group.getId()).contains(query.getUserId()));
+        }
+        if (query.getTenantId() != null) {
+            filter = and(filter, group -> false);
+        }
+        return filter;
+    }
+
+    /**
+     * @return whether the query looks up groups by {@link GroupQueryImpl#getId() id} or {@link GroupQueryImpl#getIds() ids} only, without further
+     * filters.
+     */
+    static boolean isIdLookup(GroupQueryImpl query) {
+        return (query.getId() != null || query.getIds() != null)
+            && query.getName() == null && query.getNameLike() == null
+            && query.getType() == null && query.getUserId() == null && query.getTenantId() == null;
+    }
+
+    /**
+     * Tenants are only known for the logged-in user, so tenants never have group members.
+     *
+     * @param membersOfTenant returns the ids of the users that are member of a tenant, used for {@link TenantQueryImpl#getUserId()}.
+     */
+    static Predicate<Tenant> tenantFilter(TenantQueryImpl query, Function<String, Set<String>> membersOfTenant) {
+        Predicate<Tenant> filter = null;
+        if (query.getId() != null) {
+            filter = and(filter, tenant -> query.getId().equals(tenant.getId()));
+        }
+        if (query.getIds() != null) {
+            List<String> ids = Arrays.asList(query.getIds());
+            filter = and(filter, tenant -> ids.contains(tenant.getId()));
+        }
+        filter = and(filter, query.getName(), query.getNameLike(), Tenant::getName);
+        if (query.getUserId() != null) {
+            filter = and(filter, tenant -> membersOfTenant.apply(tenant.getId()).contains(query.getUserId()));
+        }
+        if (query.getGroupId() != null) {
+            filter = and(filter, tenant -> false);
+        }
+        return filter;
+    }
+
+    /**
+     * @return the order requested by the query or {@code null}, if no order was requested.
+     */
+    static Comparator<User> userOrder(UserQueryImpl query) {
+        return order(query.getOrderingProperties(), property -> {
+            String name = property.getName();
+            if (UserQueryProperty.FIRST_NAME.getName().equals(name)) {
+                return User::getFirstName;
+            } else if (UserQueryProperty.LAST_NAME.getName().equals(name)) {
+                return User::getLastName;
+            } else if (UserQueryProperty.EMAIL.getName().equals(name)) {
+                return User::getEmail;
+            }
+            return User::getId;
+        });
+    }
+
+    /**
+     * @return the order requested by the query or {@code null}, if no order was requested.
+     */
+    static Comparator<Group> groupOrder(GroupQueryImpl query) {
+        return order(query.getOrderingProperties(), property -> {
+            String name = property.getName();
+            if (GroupQueryProperty.NAME.getName().equals(name)) {
+                return Group::getName;
+            } else if (GroupQueryProperty.TYPE.getName().equals(name)) {
+                return Group::getType;
+            }
+            return Group::getId;
+        });
+    }
+
+    /**
+     * @return the order requested by the query or {@code null}, if no order was requested.
+     */
+    static Comparator<Tenant> tenantOrder(TenantQueryImpl query) {
+        return order(query.getOrderingProperties(), property -> {
+            if (TenantQueryProperty.NAME.getName().equals(property.getName())) {
+                return Tenant::getName;
+            }
+            return Tenant::getId;
+        });
+    }
+
+    /**
+     * Selects the requested page of the matching candidates.
+     *
+     * @param order the requested order, {@code null} to keep the order of the candidates.
+     * @param page  the requested page, {@code null} for all results.
+     */
+    static <T> List<T> list(Collection<T> candidates, Predicate<T> filter, Comparator<T> order, Page page) {
+        Stream<T> matches = filter != null ? candidates.stream().filter(filter) : candidates.stream();
+        if (order == null) {
+            if (page != null) {
+                matches = matches.skip(page.getFirstResult()).limit(page.getMaxResults());
+            }
+            return matches.collect(toList());
+        }
+        if (page == null) {
+            return matches.sorted(order).collect(toList());
+        }
+        return topPage(matches, order, page);
+    }
+
+    /**
+     * Counts the matching candidates without collecting them.
+     */
+    static <T> long count(Collection<T> candidates, Predicate<T> filter) {
+        return filter != null ? candidates.stream().filter(filter).count() : candidates.size();
+    }
+
+    /**
+     * Narrows the candidates to the ones given by id, if the query contains ids. Otherwise all candidates are returned.
+     */
+    static <T> Collection<T> candidates(String id, String[] ids, Function<String, T> byId, Collection<T> all) {
+        if (id != null) {
+            T candidate = byId.apply(id);
+            return candidate != null ? List.of(candidate) : List.of();
+        }
+        if (ids != null) {
+            return byIds(new TreeSet<>(Arrays.asList(ids)), byId);
+        }
+        return all;
+    }
+
+    static <T> Collection<T> byIds(Collection<String> ids, Function<String, T> byId) {
+        List<T> candidates = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T candidate = byId.apply(id);
+            if (candidate != null) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+
+    // keeps only the first + max smallest elements on a heap instead of sorting all matches
+    private static <T> List<T> topPage(Stream<T> matches, Comparator<T> order, Page page) {
+        int first = Math.max(page.getFirstResult(), 0);
+        long bound = (long) first + page.getMaxResults();
+        if (bound > Integer.MAX_VALUE) {
+            return matches.sorted(order).skip(first).limit(page.getMaxResults()).collect(toList());
+        }
+        int size = (int) bound;
+        if (size == 0) {
+            return List.of();
+        }
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(size, 1024), order.reversed());
+        matches.forEach(match -> {
+            if (heap.size() < size) {
+                heap.add(match);
+            } else if (order.compare(match, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(match);
+            }
+        });
+        List<T> top = new ArrayList<>(heap);
+        top.sort(order);
+        return first >= top.size() ? Collections.emptyList() : top.subList(first, top.size());
+    }
+
+    private static <T> Comparator<T> order(
+        List<QueryOrderingProperty> orderingProperties,
+        Function<QueryProperty, Function<T, String>> attribute
+    ) {
+        Comparator<T> order = null;
+        for (QueryOrderingProperty orderingProperty : orderingProperties) {
+            if (orderingProperty.getQueryProperty() == null) {
+                continue;
+            }
+            Comparator<T> next = Comparator.comparing(attribute.apply(orderingProperty.getQueryProperty()),
+                Comparator.nullsLast(Comparator.naturalOrder()));
+            if (Direction.DESCENDING.equals(orderingProperty.getDirection())) {
+                next = next.reversed();
+            }
+            order = order == null ? next : order.thenComparing(next);
+        }
+        return order;
+    }
+
+    private static <T> Predicate<T> and(Predicate<T> filter, Predicate<T> condition) {
+        return filter == null ? condition : filter.and(condition);
+    }
+
+    private static <T> Predicate<T> and(Predicate<T> filter, String value, String likePattern, Function<T, String> attribute) {
+        if (value != null) {
+            filter = and(filter, candidate -> value.equals(attribute.apply(candidate)));
+        }
+        if (likePattern != null) {
+            Pattern pattern = like(likePattern);
+            filter = and(filter, candidate -> {
+                String attributeValue = attribute.apply(candidate);
+                return attributeValue != null && pattern.matcher(attributeValue).matches();
+            });
+        }
+        return filter;
+    }
+
+    /**
+     * Translates a SQL like pattern with the wildcards {@code %} and {@code _} to a (case-insensitive) regular expression.
+     */
+    static Pattern like(String likePattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : likePattern.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+}
@@ -1,15 +1,35 @@
 package io.holunda.example.camunda.sso.config.camunda;
 
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
 import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
-import org.camunda.bpm.engine.impl.persistence.GenericManagerFactory;
 import org.camunda.bpm.spring.boot.starter.configuration.CamundaProcessEngineConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class ReadOnlyIdentityProviderConfiguration implements CamundaProcessEngineConfiguration {
+
+    private final IdentitySnapshots identitySnapshots;
+    private final ObjectProvider<IdentityDirectory> identityDirectory;
+    private final KnownUsers knownUsers;
+    private final SsoMetrics ssoMetrics;
+
+    public ReadOnlyIdentityProviderConfiguration(
+        IdentitySnapshots identitySnapshots,
+        ObjectProvider<IdentityDirectory> identityDirectory,
+        KnownUsers knownUsers,
+        SsoMetrics ssoMetrics
+    ) {
+        this.identitySnapshots = identitySnapshots;
+        this.identityDirectory = identityDirectory;
+        this.knownUsers = knownUsers;
+        this.ssoMetrics = ssoMetrics;
+    }
+
     @Override
     public void preInit(ProcessEngineConfigurationImpl processEngineConfiguration) {
         processEngineConfiguration
-            .setIdentityProviderSessionFactory(new GenericManagerFactory(OAuthIdentityServiceProvider.class));
+            .setIdentityProviderSessionFactory(
+                new OAuthIdentityServiceProviderFactory(identitySnapshots, identityDirectory.getIfAvailable(), knownUsers, ssoMetrics));
     }
 }
@@ -1,35 +1,67 @@
 package io.holunda.example.camunda.sso.config.camunda;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
 import org.camunda.bpm.engine.rest.dto.ExceptionDto;
 import org.camunda.bpm.engine.rest.exception.ExceptionHandlerHelper;
 import org.camunda.bpm.engine.rest.exception.RestException;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
 
+import javax.servlet.ServletContext;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.Provider;
+import java.time.Duration;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static org.camunda.commons.utils.StringUtil.getStackTrace;
-
 /**
- * Changes the behaviour of camunda's {@link org.camunda.bpm.engine.rest.exception.RestExceptionHandler RestExceptionHandler} to log only internal server errors on WARNING level and
- * all other exceptions on FINE level.
+ * Changes the behaviour of camunda's {@link org.camunda.bpm.engine.rest.exception.RestExceptionHandler RestExceptionHandler} to log only server errors on WARNING level and
+ * all other exceptions on FINE level. The responses are counted by status in the {@link SsoMetrics}.<br>
+ * <br>
+ * Client errors are cheap: their response bodies are reused for repeated errors, e.g. of clients polling for a deleted task, and they are logged as a
+ * single line without stack trace (with stack trace on FINEST). Server errors are logged by the {@link ServerErrorLog}, which logs repeats of the same
+ * error once per minute and writes the stack traces on a background thread.
  */
 @Provider
 public class RestExceptionHandler extends org.camunda.bpm.engine.rest.exception.RestExceptionHandler {
 
     private static final Logger LOGGER = Logger.getLogger(RestExceptionHandler.class.getSimpleName());
+    private static final ServerErrorLog SERVER_ERROR_LOG = new ServerErrorLog(Duration.ofMinutes(1));
+    private static final int MAX_CLIENT_ERROR_RESPONSES = 1000;
+
+    // the response bodies of client errors by exception type and message
+    private final Cache<ClientError, ExceptionDto> clientErrorResponses = Caffeine.newBuilder()
+                                                                                  .maximumSize(MAX_CLIENT_ERROR_RESPONSES)
+                                                                                  .build();
+
+    @Context
+    private ServletContext servletContext;
+
+    private volatile SsoMetrics ssoMetrics;
 
     @Override
     public Response toResponse(RestException exception) {
         Response.Status responseStatus = ExceptionHandlerHelper.getInstance().getStatus(exception);
-        ExceptionDto exceptionDto = ExceptionHandlerHelper.getInstance().fromException(exception);
+        getSsoMetrics().restException(responseStatus.getStatusCode());
 
-        if (responseStatus == Response.Status.INTERNAL_SERVER_ERROR) {
-            LOGGER.log(Level.WARNING, getStackTrace(exception));
-        } else if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.log(Level.FINE, getStackTrace(exception));
+        ExceptionDto exceptionDto;
+        if (responseStatus.getFamily() == Response.Status.Family.SERVER_ERROR) {
+            exceptionDto = ExceptionHandlerHelper.getInstance().fromException(exception);
+            if (!SERVER_ERROR_LOG.log(exception)) {
+                getSsoMetrics().restErrorSuppressed();
+            }
+        } else {
+            exceptionDto = clientErrorResponses.get(new ClientError(exception), ignored -> ExceptionHandlerHelper.getInstance().fromException(exception));
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, responseStatus.getStatusCode() + " " + exception, exception);
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, responseStatus.getStatusCode() + " " + exception);
+            }
         }
 
         return Response
@@ -38,4 +70,41 @@ public class RestExceptionHandler extends org.camunda.bpm.engine.rest.exception.
             .type(MediaType.APPLICATION_JSON_TYPE)
             .build();
     }
+
+    // Jersey creates this provider, so the metrics are looked up from the web application context
+    private SsoMetrics getSsoMetrics() {
+        if (ssoMetrics == null) {
+            WebApplicationContext context = servletContext != null ? WebApplicationContextUtils.getWebApplicationContext(servletContext) : null;
+            ssoMetrics = context != null ? context.getBean(SsoMetrics.class) : SsoMetrics.DISABLED;
+        }
+        return ssoMetrics;
+    }
+
+    private static class ClientError {
+
+        private final Class<?> type;
+        private final String message;
+
+        ClientError(RestException exception) {
+            this.type = exception.getClass();
+            this.message = exception.getMessage();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientError)) {
+                return false;
+            }
+            ClientError other = (ClientError) o;
+            return type == other.type && Objects.equals(message, other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(message);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.holunda.example.camunda.sso.config.ApplicationProperties.GroupMapping;
+import io.holunda.example.camunda.sso.config.ApplicationProperties.GroupMappingRule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Maps the roles of a user to camunda groups as configured by {@code application.group-mapping}: client roles of other than the configured clients are
+ * dropped, then the first rule matching a role decides whether it is excluded, renamed or collapsed into a shared group. Roles matched by no rule are
+ * kept as they are, unless {@code keep-unmapped} is disabled.<br>
+ * <br>
+ * The rules are compiled once. Rules without regular expression syntax are looked up in a map, and the outcome for every distinct role is memoized,
+ * so after warm-up mapping a role is a single map lookup.
+ */
+@Component
+public class RoleMapper {
+
+    /**
+     * Maps every role to a group of the same name, e.g. for components created outside of spring.
+     */
+    public static final RoleMapper IDENTITY = new RoleMapper(new GroupMapping(null, null, true));
+
+    // protects against tokens with arbitrary role names filling up the heap, see AuthorityRegistry
+    private static final int MAX_MEMOIZED_ROLES = 50_000;
+    private static final String CLIENT_ROLE_SEPARATOR = ":";
+    private static final Pattern REGEX_SYNTAX = Pattern.compile("[\\\\.\\[\\]{}()<>*+?^$|]");
+
+    private final Set<String> clients;
+    private final boolean keepUnmapped;
+    private final CompiledRule[] rules;
+    // the index of the first literal rule per role, regular expression rules before it still have to be tried
+    private final Map<String, Integer> literalRules = new HashMap<>();
+    private final Map<String, Optional<String>> groups = new ConcurrentHashMap<>();
+    private final boolean identity;
+
+    @Autowired
+    public RoleMapper(ApplicationProperties applicationProperties) {
+        this(applicationProperties.getGroupMapping());
+    }
+
+    /**
+     * Also used to rename the roles of an issuer before they become authorities, see {@code application.issuers.realms[].role-mapping}.
+     */
+    public RoleMapper(GroupMapping groupMapping) {
+        this.clients = groupMapping.getClients();
+        this.keepUnmapped = groupMapping.isKeepUnmapped();
+        List<GroupMappingRule> ruleProperties = groupMapping.getRules();
+        this.rules = new CompiledRule[ruleProperties.size()];
+        for (int i = 0; i < rules.length; i++) {
+            GroupMappingRule rule = ruleProperties.get(i);
+            if (rule.getRoles() == null || rule.getRoles().isEmpty()) {
+                throw new IllegalStateException("rules[" + i + "].roles of the role mapping is required");
+            }
+            rules[i] = new CompiledRule(rule);
+            if (rules[i].literal) {
+                literalRules.putIfAbsent(rule.getRoles(), i);
+            }
+        }
+        this.identity = clients.isEmpty() && rules.length == 0 && keepUnmapped;
+    }
+
+    /**
+     * @return whether every role is mapped to itself.
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return the group of the given role or {@code null}, if the role doesn't become a group.
+     */
+    public String map(String role) {
+        if (identity) {
+            return role;
+        }
+        Optional<String> group = groups.get(role);
+        if (group == null) {
+            group = Optional.ofNullable(resolve(role));
+            if (groups.size() < MAX_MEMOIZED_ROLES) {
+                groups.putIfAbsent(role, group);
+            }
+        }
+        return group.orElse(null);
+    }
+
+    /**
+     * @return the distinct groups of the given roles, in the order of the roles.
+     */
+    public List<String> mapAll(Collection<String> roles) {
+        if (identity) {
+            return roles.stream().distinct().collect(toList());
+        }
+        Set<String> mapped = new LinkedHashSet<>();
+        for (String role : roles) {
+            String group = map(role);
+            if (group != null) {
+                mapped.add(group);
+            }
+        }
+        return List.copyOf(mapped);
+    }
+
+    private String resolve(String role) {
+        int separator = role.indexOf(CLIENT_ROLE_SEPARATOR);
+        if (separator > 0 && !clients.isEmpty() && !clients.contains(role.substring(0, separator))) {
+            return null;
+        }
+
+        int literalRule = literalRules.getOrDefault(role, rules.length);
+        for (int i = 0; i < literalRule; i++) {
+            if (!rules[i].literal) {
+                Matcher matcher = rules[i].pattern.matcher(role);
+                if (matcher.matches()) {
+                    return rules[i].apply(role, matcher);
+                }
+            }
+        }
+        if (literalRule < rules.length) {
+            return rules[literalRule].apply(role, null);
+        }
+        return keepUnmapped ? role : null;
+    }
+
+    private static class CompiledRule {
+
+        private final boolean literal;
+        private final Pattern pattern;
+        private final String group;
+        private final boolean exclude;
+
+        CompiledRule(GroupMappingRule rule) {
+            this.literal = !REGEX_SYNTAX.matcher(rule.getRoles()).find();
+            // anchored, so that the replacement applies to the whole role
+            this.pattern = literal ? null : Pattern.compile("^(?:" + rule.getRoles() + ")$");
+            this.group = rule.getGroup();
+            this.exclude = rule.isExclude();
+        }
+
+        String apply(String role, Matcher matcher) {
+            if (exclude) {
+                return null;
+            }
+            if (group == null || group.isEmpty()) {
+                return role;
+            }
+            return matcher != null ? matcher.replaceFirst(group) : group;
+        }
+    }
+}
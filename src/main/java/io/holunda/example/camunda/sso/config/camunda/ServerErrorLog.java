@@ -0,0 +1,109 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs the server errors of the REST API with their stack trace, once per fingerprint and interval. The fingerprint is the type of the exception and the
+ * type and throwing frame of its root cause, so a failing database or a bug hit by every request logs one stack trace per interval instead of one per
+ * request. Repeats within the interval are counted and reported with the next stack trace of the same fingerprint.<br>
+ * <br>
+ * Formatting and writing the stack trace happens on a background thread. If it falls behind, further errors are dropped and counted instead of blocking
+ * request threads.
+ */
+class ServerErrorLog {
+
+    private static final Logger LOGGER = Logger.getLogger(RestExceptionHandler.class.getSimpleName());
+    // protects against errors with ever-changing stack traces filling up the heap
+    private static final int MAX_FINGERPRINTS = 1000;
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final long intervalNanos;
+    private final Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    ServerErrorLog(Duration interval) {
+        this.intervalNanos = interval.toNanos();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "rest-error-log");
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, ignored) -> dropped.incrementAndGet());
+    }
+
+    /**
+     * @return whether the error is logged with its stack trace, {@code false} if it is only counted as a repeat.
+     */
+    boolean log(Throwable exception) {
+        String key = fingerprint(exception);
+        Fingerprint fingerprint = fingerprints.get(key);
+        if (fingerprint == null) {
+            if (fingerprints.size() >= MAX_FINGERPRINTS) {
+                fingerprints.clear();
+            }
+            fingerprint = fingerprints.computeIfAbsent(key, ignored -> new Fingerprint());
+        }
+        long suppressed = fingerprint.occurred(System.nanoTime(), intervalNanos);
+        if (suppressed < 0) {
+            return false;
+        }
+        executor.execute(() -> {
+            long droppedSinceLast = dropped.getAndSet(0);
+            StringBuilder message = new StringBuilder(key);
+            if (suppressed > 0) {
+                message.append(" (").append(suppressed).append(" more since last logged)");
+            }
+            if (droppedSinceLast > 0) {
+                message.append(" (").append(droppedSinceLast).append(" errors dropped, the log couldn't keep up)");
+            }
+            LOGGER.log(Level.WARNING, message.toString(), exception);
+        });
+        return true;
+    }
+
+    private static String fingerprint(Throwable exception) {
+        Throwable rootCause = exception;
+        while (rootCause.getCause() != null && rootCause.getCause() != rootCause) {
+            rootCause = rootCause.getCause();
+        }
+        StackTraceElement[] stackTrace = rootCause.getStackTrace();
+        StringBuilder fingerprint = new StringBuilder(exception.getClass().getName());
+        if (rootCause != exception) {
+            fingerprint.append(" caused by ").append(rootCause.getClass().getName());
+        }
+        if (stackTrace.length > 0) {
+            fingerprint.append(" at ").append(stackTrace[0]);
+        }
+        return fingerprint.toString();
+    }
+
+    private static class Fingerprint {
+
+        private long nextLog;
+        private boolean logged;
+        private long suppressed;
+
+        /**
+         * @return the number of repeats since the error was logged last if it is to be logged now, {@code -1} if it is a repeat.
+         */
+        synchronized long occurred(long now, long intervalNanos) {
+            if (logged && now - nextLog < 0) {
+                suppressed++;
+                return -1;
+            }
+            logged = true;
+            nextLog = now + intervalNanos;
+            long repeats = suppressed;
+            suppressed = 0;
+            return repeats;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.GenericFilterBean;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the servlet {@code HttpSession} with a session that only lives for the current request, for the stateless session mode. Camunda's webapp
+ * filters keep their {@code Authentications} in the session; with this filter they are rebuilt on every request by the
+ * {@link OAuthContainerBasedAuthenticationProvider} from the authentication restored from the session cookie, and nothing is kept on the server.<br>
+ * <br>
+ * The CSRF token of camunda's {@code CsrfPreventionFilter} would otherwise be lost between requests. It is seeded from the {@code XSRF-TOKEN} cookie the
+ * filter hands out, turning its check into a double submit cookie check: a modifying request must send the token in a header, which other sites can't
+ * read from the cookie.<br>
+ * <br>
+ * Invalidating the session (e.g. by camunda's logout) logs out from spring security, too, so the session cookie is removed.
+ */
+public class TransientSessionFilter extends GenericFilterBean {
+
+    // see org.camunda.bpm.webapp.impl.security.filter.util.CsrfConstants
+    static final String CSRF_TOKEN_SESSION_ATTRIBUTE = "CAMUNDA_CSRF_TOKEN";
+    static final String CSRF_TOKEN_COOKIE = "XSRF-TOKEN";
+
+    private static final Pattern CSRF_TOKEN_PATTERN = Pattern.compile("[A-Za-z0-9_-]{16,128}");
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain) throws IOException, ServletException {
+        // forwards, includes and error dispatches may pass the original request again
+        if (!(request instanceof HttpServletRequest) || WebUtils.getNativeRequest(request, TransientSessionRequest.class) != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        filterChain.doFilter(new TransientSessionRequest((HttpServletRequest) request, ignored -> SecurityContextHolder.clearContext()), response);
+    }
+
+    private static class TransientSessionRequest extends HttpServletRequestWrapper {
+
+        private final Consumer<HttpSession> onInvalidate;
+        private TransientSession session;
+
+        TransientSessionRequest(HttpServletRequest request, Consumer<HttpSession> onInvalidate) {
+            super(request);
+            this.onInvalidate = onInvalidate;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if ((session == null || session.invalidated) && create) {
+                session = new TransientSession(getServletContext(), onInvalidate);
+                Cookie csrfCookie = WebUtils.getCookie(this, CSRF_TOKEN_COOKIE);
+                if (csrfCookie != null && CSRF_TOKEN_PATTERN.matcher(csrfCookie.getValue()).matches()) {
+                    session.setAttribute(CSRF_TOKEN_SESSION_ATTRIBUTE, csrfCookie.getValue());
+                }
+            }
+            return session == null || session.invalidated ? null : session;
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession current = getSession(false);
+            if (current == null) {
+                throw new IllegalStateException("No session");
+            }
+            return current.getId();
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            return null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return false;
+        }
+    }
+
+    private static class TransientSession implements HttpSession {
+
+        private final ServletContext servletContext;
+        private final Consumer<HttpSession> onInvalidate;
+        private final String id = UUID.randomUUID().toString();
+        private final long creationTime = System.currentTimeMillis();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private int maxInactiveInterval;
+        private boolean invalidated;
+
+        TransientSession(ServletContext servletContext, Consumer<HttpSession> onInvalidate) {
+            this.servletContext = servletContext;
+            this.onInvalidate = onInvalidate;
+        }
+
+        @Override
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            return creationTime;
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            return servletContext;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(int interval) {
+            this.maxInactiveInterval = interval;
+        }
+
+        @Override
+        public int getMaxInactiveInterval() {
+            return maxInactiveInterval;
+        }
+
+        @Override
+        @Deprecated
+        public HttpSessionContext getSessionContext() {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        @Deprecated
+        public Object getValue(String name) {
+            return getAttribute(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            return Collections.enumeration(attributes.keySet());
+        }
+
+        @Override
+        @Deprecated
+        public String[] getValueNames() {
+            return attributes.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            if (value == null) {
+                removeAttribute(name);
+            } else {
+                attributes.put(name, value);
+            }
+        }
+
+        @Override
+        @Deprecated
+        public void putValue(String name, Object value) {
+            setAttribute(name, value);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+        }
+
+        @Override
+        @Deprecated
+        public void removeValue(String name) {
+            removeAttribute(name);
+        }
+
+        @Override
+        public void invalidate() {
+            if (invalidated) {
+                throw new IllegalStateException("Session already invalidated");
+            }
+            invalidated = true;
+            attributes.clear();
+            onInvalidate.accept(this);
+        }
+
+        @Override
+        public boolean isNew() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Canonicalizes granted authorities. Every distinct authority string is backed by exactly one {@link GrantedAuthority} instance and the authority lists
+ * built from a given role claim structure are shared between all tokens carrying the same roles. Users of the same realm usually have the same few role
+ * combinations, so after warm-up extracting the authorities of a token allocates nothing but the lookup key.
+ */
+@Component
+public class AuthorityRegistry {
+
+    // upper bounds protect against tokens with arbitrary role names filling up the heap
+    private static final int MAX_INTERNED_AUTHORITIES = 50_000;
+    private static final long MAX_AUTHORITY_SETS = 10_000;
+
+    private final ConcurrentHashMap<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+    private final Cache<Object, List<GrantedAuthority>> authoritySets = Caffeine.newBuilder()
+                                                                               .maximumSize(MAX_AUTHORITY_SETS)
+                                                                               .build();
+
+    /**
+     * Returns the canonical instance for the given authority.
+     */
+    public GrantedAuthority authority(String authority) {
+        GrantedAuthority interned = authorities.get(authority);
+        if (interned != null) {
+            return interned;
+        }
+        if (authorities.size() >= MAX_INTERNED_AUTHORITIES) {
+            return new SimpleGrantedAuthority(authority);
+        }
+        return authorities.computeIfAbsent(authority, SimpleGrantedAuthority::new);
+    }
+
+    /**
+     * Returns the immutable authority list memoized for the given raw claim structure, building it on first use.
+     *
+     * @param claims  the claim values the authorities are derived from. Must implement value based {@code equals} and {@code hashCode}.
+     * @param builder builds the authorities, should use {@link #authority(String)} for each element.
+     */
+    public List<GrantedAuthority> authorities(Object claims, Supplier<List<GrantedAuthority>> builder) {
+        return authoritySets.get(claims, ignored -> List.copyOf(builder.get()));
+    }
+}
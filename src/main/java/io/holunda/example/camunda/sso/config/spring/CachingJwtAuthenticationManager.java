@@ -0,0 +1,143 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * {@link AuthenticationManager} for the resource server that remembers the verified {@link org.springframework.security.oauth2.jwt.Jwt Jwt} and the
+ * authorities of a token. Clients of the REST API send the same access token many times until it expires, so signature verification and the
+ * {@link GrantedAuthoritiesExtractor} only need to run once per token. Every request gets an authentication of its own with the details of that
+ * request, only the token and the authorities are shared. Tokens that are not cached yet are verified by the decoder of their issuer, see
+ * {@link IssuerRegistry}.<br>
+ * Entries are keyed by a hash of the token value, bounded in number and evicted no later than the token's {@code exp} claim. If revocation is enabled,
+ * cached tokens are checked against the {@link RevocationList} on every request, so a revoked token is rejected although its entry lives on.
+ */
+@Component
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+
+    private final IssuerRegistry issuerRegistry;
+    private final Cache<String, JwtAuthenticationToken> authentications;
+    private final boolean enabled;
+    private final RevocationList revocationList;
+    private final SsoMetrics ssoMetrics;
+
+    public CachingJwtAuthenticationManager(
+        IssuerRegistry issuerRegistry,
+        ApplicationProperties applicationProperties,
+        ObjectProvider<RevocationList> revocationList,
+        MeterRegistry meterRegistry,
+        SsoMetrics ssoMetrics
+    ) {
+        ApplicationProperties.JwtCache properties = applicationProperties.getJwtCache();
+        this.issuerRegistry = issuerRegistry;
+        this.enabled = properties.isEnabled();
+        this.revocationList = revocationList.getIfAvailable();
+        this.ssoMetrics = ssoMetrics;
+        this.authentications = Caffeine.newBuilder()
+                                       .maximumSize(properties.getMaximumSize())
+                                       .expireAfter(new TokenExpiry(properties.getMaximumTtl()))
+                                       .recordStats()
+                                       .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, authentications, "sso.jwt.authentications");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        long start = ssoMetrics.start();
+
+        String key = null;
+        if (enabled) {
+            key = TokenHashes.sha256(bearer.getToken());
+            JwtAuthenticationToken cached = authentications.getIfPresent(key);
+            if (cached != null) {
+                ssoMetrics.tokenCached(start);
+                return checkRevocation(withDetails(cached, bearer));
+            }
+        }
+
+        JwtAuthenticationToken verified;
+        try {
+            TrustedIssuer issuer = issuerRegistry.resolve(bearer.getToken());
+            if (issuer == null) {
+                throw new InvalidBearerTokenException("The token is not issued by a trusted issuer");
+            }
+            verified = (JwtAuthenticationToken) issuer.getAuthenticationProvider().authenticate(bearer);
+        } catch (AuthenticationException e) {
+            ssoMetrics.tokenRejected(start);
+            throw e;
+        }
+        ssoMetrics.tokenVerified(start);
+        // failed verifications throw and are therefore never cached
+        if (enabled) {
+            // cached without the details of this request, which the provider copied from the bearer token
+            authentications.put(key, withDetails(verified, null));
+        }
+        return checkRevocation(verified);
+    }
+
+    private static JwtAuthenticationToken withDetails(JwtAuthenticationToken authentication, BearerTokenAuthenticationToken bearer) {
+        JwtAuthenticationToken copy = new JwtAuthenticationToken(authentication.getToken(), authentication.getAuthorities(), authentication.getName());
+        if (bearer != null) {
+            copy.setDetails(bearer.getDetails());
+        }
+        return copy;
+    }
+
+    private JwtAuthenticationToken checkRevocation(JwtAuthenticationToken authentication) {
+        if (revocationList != null && revocationList.isRevoked(authentication.getTokenAttributes())) {
+            throw new InvalidBearerTokenException("The token has been revoked");
+        }
+        return authentication;
+    }
+
+    /**
+     * Lets each entry live until its token expires, but never longer than the configured maximum.
+     */
+    private static class TokenExpiry implements Expiry<String, JwtAuthenticationToken> {
+
+        private final Duration maximumTtl;
+
+        TokenExpiry(Duration maximumTtl) {
+            this.maximumTtl = maximumTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, JwtAuthenticationToken value, long currentTime) {
+            Instant expiresAt = value.getToken().getExpiresAt();
+            if (expiresAt == null) {
+                return maximumTtl.toNanos();
+            }
+            Duration remaining = Duration.between(Instant.now(), expiresAt);
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return remaining.compareTo(maximumTtl) < 0 ? remaining.toNanos() : maximumTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtAuthenticationToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionException;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link AuthenticationManager} for opaque (reference) access tokens, which the resource server can only verify by asking the identity provider's
+ * introspection endpoint. The authorities are derived from the realm and client roles of the introspection result by the
+ * {@link GrantedAuthoritiesExtractor}, the same way as for JWTs.<br>
+ * <br>
+ * Like {@link CachingJwtAuthenticationManager}, the authentications are cached by a hash of the token value, bounded in number and evicted no later
+ * than the token's {@code exp} claim, so a token is introspected once instead of once per request. Concurrent requests with a token that is not cached
+ * yet wait for the introspection of the first one instead of introspecting it again, at most as long as the introspection request itself may take.
+ * Inactive tokens and failed introspections are not cached. Like
+ * JWTs, cached tokens are checked against the {@link RevocationList} on every request, if revocation is enabled.
+ */
+public class CachingOpaqueTokenAuthenticationManager implements AuthenticationManager {
+
+    private static final String ISSUED_AT = "iat";
+    private static final String EXPIRES_AT = "exp";
+
+    private final OpaqueTokenIntrospector introspector;
+    private final GrantedAuthoritiesExtractor grantedAuthoritiesExtractor;
+    private final AsyncCache<String, BearerTokenAuthentication> authentications;
+    private final Duration maximumWait;
+    private final RevocationList revocationList;
+    private final SsoMetrics ssoMetrics;
+
+    public CachingOpaqueTokenAuthenticationManager(
+        OpaqueTokenIntrospector introspector,
+        GrantedAuthoritiesExtractor grantedAuthoritiesExtractor,
+        long maximumSize,
+        Duration maximumTtl,
+        Duration timeout,
+        RevocationList revocationList,
+        MeterRegistry meterRegistry,
+        SsoMetrics ssoMetrics
+    ) {
+        this.introspector = introspector;
+        this.grantedAuthoritiesExtractor = grantedAuthoritiesExtractor;
+        this.revocationList = revocationList;
+        this.ssoMetrics = ssoMetrics;
+        // the introspection request times out after connect and read timeout
+        this.maximumWait = timeout.multipliedBy(2);
+        this.authentications = Caffeine.newBuilder()
+                                       .maximumSize(maximumSize)
+                                       .expireAfter(new TokenExpiry(maximumTtl))
+                                       .recordStats()
+                                       .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, authentications.synchronous(), "sso.introspection.authentications");
+    }
+
+    /**
+     * @return whether the token looks like a JWT (three dot separated parts) rather than an opaque token.
+     */
+    public static boolean isJwt(String token) {
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        return second > 0 && token.indexOf('.', second + 1) < 0;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        BearerTokenAuthentication result = lookup((BearerTokenAuthenticationToken) authentication);
+        if (revocationList != null && revocationList.isRevoked(result.getTokenAttributes())) {
+            throw new InvalidBearerTokenException("The token has been revoked");
+        }
+        return result;
+    }
+
+    private BearerTokenAuthentication lookup(BearerTokenAuthenticationToken bearer) {
+        long start = ssoMetrics.start();
+        String key = TokenHashes.sha256(bearer.getToken());
+
+        CompletableFuture<BearerTokenAuthentication> cached = authentications.getIfPresent(key);
+        if (cached == null) {
+            CompletableFuture<BearerTokenAuthentication> introspection = new CompletableFuture<>();
+            cached = authentications.asMap().putIfAbsent(key, introspection);
+            if (cached == null) {
+                return introspect(bearer.getToken(), introspection, start);
+            }
+        }
+
+        try {
+            BearerTokenAuthentication result = cached.get(maximumWait.toMillis(), TimeUnit.MILLISECONDS);
+            ssoMetrics.introspectionCached(start);
+            return result;
+        } catch (ExecutionException e) {
+            ssoMetrics.introspectionRejected(start);
+            if (e.getCause() instanceof AuthenticationException) {
+                throw (AuthenticationException) e.getCause();
+            }
+            throw new AuthenticationServiceException("Token introspection failed", e.getCause());
+        } catch (TimeoutException e) {
+            ssoMetrics.introspectionRejected(start);
+            throw new AuthenticationServiceException("Timed out waiting for the token introspection", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException("Interrupted while waiting for the token introspection", e);
+        }
+    }
+
+    // runs on the first request with the token, failed futures are removed from the cache by caffeine. The future is completed in any case, also if
+    // an Error is thrown, so that the requests waiting for it never hang
+    private BearerTokenAuthentication introspect(String token, CompletableFuture<BearerTokenAuthentication> introspection, long start) {
+        try {
+            BearerTokenAuthentication result = toAuthentication(token, introspector.introspect(token));
+            introspection.complete(result);
+            ssoMetrics.tokenIntrospected(start);
+            return result;
+        } catch (BadOpaqueTokenException e) {
+            throw reject(introspection, new InvalidBearerTokenException(e.getMessage(), e), start);
+        } catch (OAuth2IntrospectionException e) {
+            throw reject(introspection, new AuthenticationServiceException(e.getMessage(), e), start);
+        } catch (RuntimeException e) {
+            throw reject(introspection, e instanceof AuthenticationException ? e : new AuthenticationServiceException(e.getMessage(), e), start);
+        } finally {
+            if (!introspection.isDone()) {
+                reject(introspection, new AuthenticationServiceException("Token introspection failed"), start);
+            }
+        }
+    }
+
+    private RuntimeException reject(CompletableFuture<BearerTokenAuthentication> introspection, RuntimeException exception, long start) {
+        introspection.completeExceptionally(exception);
+        ssoMetrics.introspectionRejected(start);
+        return exception;
+    }
+
+    private BearerTokenAuthentication toAuthentication(String token, OAuth2AuthenticatedPrincipal introspected) {
+        Collection<GrantedAuthority> authorities = grantedAuthoritiesExtractor.extractAuthorities(introspected);
+        OAuth2AuthenticatedPrincipal principal = new OAuth2IntrospectionAuthenticatedPrincipal(introspected.getName(), introspected.getAttributes(), authorities);
+        Instant issuedAt = introspected.getAttribute(ISSUED_AT);
+        Instant expiresAt = introspected.getAttribute(EXPIRES_AT);
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, issuedAt, expiresAt);
+        return new BearerTokenAuthentication(principal, accessToken, authorities);
+    }
+
+    /**
+     * Lets each entry live until its token expires, but never longer than the configured maximum.
+     */
+    private static class TokenExpiry implements Expiry<String, BearerTokenAuthentication> {
+
+        private final Duration maximumTtl;
+
+        TokenExpiry(Duration maximumTtl) {
+            this.maximumTtl = maximumTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, BearerTokenAuthentication value, long currentTime) {
+            Instant expiresAt = value.getToken().getExpiresAt();
+            if (expiresAt == null) {
+                return maximumTtl.toNanos();
+            }
+            Duration remaining = Duration.between(Instant.now(), expiresAt);
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return remaining.compareTo(maximumTtl) < 0 ? remaining.toNanos() : maximumTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, BearerTokenAuthentication value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, BearerTokenAuthentication value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
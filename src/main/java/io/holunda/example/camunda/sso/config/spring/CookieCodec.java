@@ -0,0 +1,229 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores small payloads in cookies that only this application (or another node sharing the same secret) can read or produce. Payloads are compressed,
+ * encrypted and authenticated with AES-GCM, and bound to the cookie name so a value can't be replayed under another name. Values that exceed the size
+ * browsers accept for a single cookie are split into chunks named {@code <name>}, {@code <name>.1}, {@code <name>.2} and so on.<br>
+ * <br>
+ * Cookies are {@code HttpOnly}, {@code SameSite=Lax} and {@code Secure} if the request was received over https (see the {@code ForwardedHeaderFilter}).
+ */
+public class CookieCodec {
+
+    private static final int MINIMUM_SECRET_LENGTH = 32;
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int CHUNK_LENGTH = 3800;
+    private static final int MAX_CHUNKS = 16;
+    private static final int MAX_PAYLOAD_SIZE = 256 * 1024;
+    private static final String CHUNK_SEPARATOR = ".";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKey key;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * @param secret shared by all nodes of the application, at least 32 characters.
+     */
+    public CookieCodec(String secret) {
+        if (secret == null || secret.length() < MINIMUM_SECRET_LENGTH) {
+            throw new IllegalStateException("The session secret must have at least " + MINIMUM_SECRET_LENGTH + " characters");
+        }
+        this.key = new SecretKeySpec(sha256(secret.getBytes(StandardCharsets.UTF_8)), "AES");
+    }
+
+    /**
+     * @return the payload of the cookie or {@code null}, if there is no such cookie or it can't be decrypted.
+     */
+    public byte[] read(HttpServletRequest request, String name) {
+        String value = readChunks(request.getCookies(), name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] encrypted = DECODER.decode(value);
+            if (encrypted.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, encrypted, 0, IV_LENGTH));
+            cipher.updateAAD(name.getBytes(StandardCharsets.UTF_8));
+            return inflate(cipher.doFinal(encrypted, IV_LENGTH, encrypted.length - IV_LENGTH));
+        } catch (IllegalArgumentException | GeneralSecurityException | DataFormatException e) {
+            // tampered with, written with another secret or truncated by the browser
+            return null;
+        }
+    }
+
+    public boolean contains(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the payload and removes chunks of a previous, longer value.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, String name, byte[] payload, String path, Duration maxAge) {
+        String value;
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(name.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = cipher.doFinal(deflate(payload));
+            value = ENCODER.encodeToString(ByteBuffer.allocate(IV_LENGTH + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Couldn't encrypt cookie " + name, e);
+        }
+
+        int chunks = (value.length() + CHUNK_LENGTH - 1) / CHUNK_LENGTH;
+        if (chunks > MAX_CHUNKS) {
+            throw new IllegalStateException("Cookie " + name + " would exceed " + MAX_CHUNKS + " chunks");
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            String chunkValue = value.substring(chunk * CHUNK_LENGTH, Math.min(value.length(), (chunk + 1) * CHUNK_LENGTH));
+            addCookie(request, response, chunkName(name, chunk), chunkValue, path, maxAge);
+        }
+        clearChunks(request, response, name, path, chunks);
+    }
+
+    public void clear(HttpServletRequest request, HttpServletResponse response, String name, String path) {
+        clearChunks(request, response, name, path, 0);
+    }
+
+    private void clearChunks(HttpServletRequest request, HttpServletResponse response, String name, String path, int fromChunk) {
+        for (int chunk = fromChunk; chunk < MAX_CHUNKS && contains(request, chunkName(name, chunk)); chunk++) {
+            addCookie(request, response, chunkName(name, chunk), "", path, Duration.ZERO);
+        }
+    }
+
+    private static void addCookie(HttpServletRequest request, HttpServletResponse response, String name, String value, String path, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+                                              .path(path)
+                                              .maxAge(maxAge)
+                                              .httpOnly(true)
+                                              .secure(request.isSecure())
+                                              .sameSite("Lax")
+                                              .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static String readChunks(Cookie[] cookies, String name) {
+        if (cookies == null) {
+            return null;
+        }
+        String[] chunks = new String[MAX_CHUNKS];
+        for (Cookie cookie : cookies) {
+            int chunk = chunkIndex(cookie.getName(), name);
+            if (chunk >= 0) {
+                chunks[chunk] = cookie.getValue();
+            }
+        }
+        if (chunks[0] == null) {
+            return null;
+        }
+        StringBuilder value = new StringBuilder(chunks[0]);
+        for (int chunk = 1; chunk < MAX_CHUNKS && chunks[chunk] != null; chunk++) {
+            value.append(chunks[chunk]);
+        }
+        return value.toString();
+    }
+
+    private static String chunkName(String name, int chunk) {
+        return chunk == 0 ? name : name + CHUNK_SEPARATOR + chunk;
+    }
+
+    private static int chunkIndex(String cookieName, String name) {
+        if (cookieName.equals(name)) {
+            return 0;
+        }
+        if (cookieName.startsWith(name + CHUNK_SEPARATOR)) {
+            try {
+                int chunk = Integer.parseInt(cookieName.substring(name.length() + 1));
+                return chunk > 0 && chunk < MAX_CHUNKS ? chunk : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated payload");
+                }
+                out.write(buffer, 0, length);
+                if (out.size() > MAX_PAYLOAD_SIZE) {
+                    throw new DataFormatException("Payload too large");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] sha256(byte[] secret) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(secret);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.util.SerializationUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * Keeps the pending OAuth2 authorization request (state, nonce, redirect URI) in a short-lived encrypted cookie between the redirect to the login page and
+ * the callback, instead of the {@code HttpSession}. The callback may therefore be handled by any node.
+ */
+public class CookieOAuth2AuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    static final String COOKIE_NAME = "CAMUNDA_SSO_LOGIN";
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private final CookieCodec cookieCodec;
+
+    public CookieOAuth2AuthorizationRequestRepository(CookieCodec cookieCodec) {
+        this.cookieCodec = cookieCodec;
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+        byte[] bytes = cookieCodec.read(request, COOKIE_NAME);
+        if (bytes == null) {
+            return null;
+        }
+        // the cookie is authenticated, so only values serialized by saveAuthorizationRequest are deserialized
+        Object authorizationRequest = SerializationUtils.deserialize(bytes);
+        return authorizationRequest instanceof OAuth2AuthorizationRequest ? (OAuth2AuthorizationRequest) authorizationRequest : null;
+    }
+
+    @Override
+    public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest, HttpServletRequest request, HttpServletResponse response) {
+        if (authorizationRequest == null) {
+            cookieCodec.clear(request, response, COOKIE_NAME, CookieSecurityContextRepository.COOKIE_PATH);
+            return;
+        }
+        cookieCodec.write(request, response, COOKIE_NAME, SerializationUtils.serialize(authorizationRequest), CookieSecurityContextRepository.COOKIE_PATH,
+            MAX_AGE);
+    }
+
+    @Override
+    @Deprecated
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request) {
+        return loadAuthorizationRequest(request);
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request, HttpServletResponse response) {
+        OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+        if (authorizationRequest != null) {
+            cookieCodec.clear(request, response, COOKIE_NAME, CookieSecurityContextRepository.COOKIE_PATH);
+        }
+        return authorizationRequest;
+    }
+}
@@ -0,0 +1,248 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SaveContextOnUpdateOrErrorResponseWrapper;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor.SPRING_ROLE_PREFIX;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Keeps the OAuth2 login of the webapps in an encrypted cookie instead of the {@code HttpSession}. Only what is needed to rebuild the
+ * {@link OAuth2AuthenticationToken} is stored: the client registration, the user attributes read by the identity provider and the roles. The
+ * authentication is rebuilt on every request, with the authorities shared through the {@link AuthorityRegistry}.<br>
+ * <br>
+ * The cookie is written after a login and renewed when half of the idle timeout has elapsed, all other requests don't touch it. Renewals keep the
+ * time of the login, and a cookie is never valid longer than the maximum lifetime after it, so an active user still has to log in at the identity
+ * provider again eventually, where e.g. a disabled user is rejected.
+ */
+public class CookieSecurityContextRepository implements SecurityContextRepository {
+
+    public static final String COOKIE_NAME = "CAMUNDA_SSO_SESSION";
+    static final String COOKIE_PATH = "/";
+
+    private static final Logger LOGGER = Logger.getLogger(CookieSecurityContextRepository.class.getSimpleName());
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private static final String REGISTRATION = "reg";
+    private static final String ATTRIBUTES = "attr";
+    private static final String ROLES = "roles";
+    private static final String EXPIRES_AT = "exp";
+    private static final String LOGGED_IN_AT = "auth";
+
+    private final CookieCodec cookieCodec;
+    private final ClientRegistrationRepository clientRegistrationRepository;
+    private final AuthorityRegistry authorityRegistry;
+    private final Duration timeout;
+    private final Duration maximumLifetime;
+    private final List<String> attributeNames;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param maximumLifetime the time after the login after which the cookie is rejected, no matter how often it was renewed.
+     * @param attributeNames  the user attributes kept in the cookie, in addition to the name attribute of the registration.
+     */
+    public CookieSecurityContextRepository(
+        CookieCodec cookieCodec,
+        ClientRegistrationRepository clientRegistrationRepository,
+        AuthorityRegistry authorityRegistry,
+        Duration timeout,
+        Duration maximumLifetime,
+        List<String> attributeNames
+    ) {
+        this.cookieCodec = cookieCodec;
+        this.clientRegistrationRepository = clientRegistrationRepository;
+        this.authorityRegistry = authorityRegistry;
+        this.timeout = timeout;
+        this.maximumLifetime = maximumLifetime;
+        this.attributeNames = attributeNames;
+    }
+
+    @Override
+    public SecurityContext loadContext(HttpRequestResponseHolder requestResponseHolder) {
+        HttpServletRequest request = requestResponseHolder.getRequest();
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+
+        Map<String, Object> payload = readPayload(request);
+        boolean renew = false;
+        Instant loggedInAt = null;
+        if (payload != null) {
+            Instant expiresAt = Instant.ofEpochSecond(((Number) payload.get(EXPIRES_AT)).longValue());
+            loggedInAt = Instant.ofEpochSecond(((Number) payload.get(LOGGED_IN_AT)).longValue());
+            Instant now = Instant.now();
+            if (expiresAt.isAfter(now) && loggedInAt.plus(maximumLifetime).isAfter(now)) {
+                context.setAuthentication(restore(payload));
+                // a cookie capped by the maximum lifetime can't be extended, renewing it would write the same expiry again
+                renew = Duration.between(now, expiresAt).compareTo(timeout.dividedBy(2)) < 0 && expiresAt.isBefore(loggedInAt.plus(maximumLifetime));
+            }
+        }
+
+        requestResponseHolder.setResponse(
+            new SaveToCookieResponseWrapper(requestResponseHolder.getResponse(), request, context.getAuthentication(), loggedInAt, renew)
+        );
+        return context;
+    }
+
+    @Override
+    public void saveContext(SecurityContext context, HttpServletRequest request, HttpServletResponse response) {
+        SaveToCookieResponseWrapper wrapper = WebUtils.getNativeResponse(response, SaveToCookieResponseWrapper.class);
+        if (wrapper != null && !wrapper.isContextSaved()) {
+            wrapper.saveContext(context);
+        }
+    }
+
+    @Override
+    public boolean containsContext(HttpServletRequest request) {
+        return cookieCodec.contains(request, COOKIE_NAME);
+    }
+
+    private Map<String, Object> readPayload(HttpServletRequest request) {
+        byte[] bytes = cookieCodec.read(request, COOKIE_NAME);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            Map<String, Object> payload = objectMapper.readValue(bytes, PAYLOAD_TYPE);
+            // cookies without login time were written before the maximum lifetime was enforced, they require a new login
+            return payload.get(EXPIRES_AT) instanceof Number && payload.get(LOGGED_IN_AT) instanceof Number ? payload : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Ignoring unreadable session cookie", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Authentication restore(Map<String, Object> payload) {
+        ClientRegistration registration = clientRegistrationRepository.findByRegistrationId((String) payload.get(REGISTRATION));
+        if (registration == null) {
+            return null;
+        }
+        Map<String, Object> attributes = (Map<String, Object>) payload.get(ATTRIBUTES);
+        List<String> roles = (List<String>) payload.get(ROLES);
+        String nameAttributeKey = registration.getProviderDetails().getUserInfoEndpoint().getUserNameAttributeName();
+        if (attributes == null || roles == null || !attributes.containsKey(nameAttributeKey)) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = authorityRegistry.authorities(roles, () -> roles.stream()
+                                                                                          .map(role -> authorityRegistry.authority(SPRING_ROLE_PREFIX + role))
+                                                                                          .collect(toList()));
+        DefaultOAuth2User user = new DefaultOAuth2User(authorities, attributes, nameAttributeKey);
+        return new OAuth2AuthenticationToken(user, authorities, registration.getRegistrationId());
+    }
+
+    private byte[] serialize(OAuth2AuthenticationToken authentication, Instant loggedInAt, Instant expiresAt) throws JsonProcessingException {
+        ClientRegistration registration = clientRegistrationRepository.findByRegistrationId(authentication.getAuthorizedClientRegistrationId());
+        String nameAttributeKey = registration.getProviderDetails().getUserInfoEndpoint().getUserNameAttributeName();
+
+        Map<String, Object> userAttributes = authentication.getPrincipal().getAttributes();
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(nameAttributeKey, userAttributes.get(nameAttributeKey));
+        for (String attributeName : attributeNames) {
+            Object value = userAttributes.get(attributeName);
+            if (value instanceof Instant) {
+                // timestamp claims like iat, in the numeric form of the token
+                attributes.put(attributeName, ((Instant) value).getEpochSecond());
+            } else if (value != null) {
+                attributes.put(attributeName, value);
+            }
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put(REGISTRATION, registration.getRegistrationId());
+        payload.put(ATTRIBUTES, attributes);
+        payload.put(ROLES, roles(authentication.getAuthorities()));
+        payload.put(EXPIRES_AT, expiresAt.getEpochSecond());
+        payload.put(LOGGED_IN_AT, loggedInAt.getEpochSecond());
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    private static List<String> roles(Collection<GrantedAuthority> authorities) {
+        List<String> roles = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            String role = authority.getAuthority();
+            roles.add(role.startsWith(SPRING_ROLE_PREFIX) ? role.substring(SPRING_ROLE_PREFIX.length()) : role);
+        }
+        return roles;
+    }
+
+    /**
+     * Writes the cookie before the response is committed, the same way the {@code HttpSessionSecurityContextRepository} stores the context in the
+     * session.
+     */
+    private class SaveToCookieResponseWrapper extends SaveContextOnUpdateOrErrorResponseWrapper {
+
+        private final HttpServletRequest request;
+        private final Authentication loadedAuthentication;
+        private final Instant loadedLoginTime;
+        private final boolean renew;
+
+        SaveToCookieResponseWrapper(
+            HttpServletResponse response,
+            HttpServletRequest request,
+            Authentication loadedAuthentication,
+            Instant loadedLoginTime,
+            boolean renew
+        ) {
+            super(response, true);
+            this.request = request;
+            this.loadedAuthentication = loadedAuthentication;
+            this.loadedLoginTime = loadedLoginTime;
+            this.renew = renew;
+        }
+
+        @Override
+        protected void saveContext(SecurityContext context) {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            Authentication authentication = context.getAuthentication();
+            if (!(authentication instanceof OAuth2AuthenticationToken)) {
+                if (containsContext(request)) {
+                    // logged out, expired or written with another secret
+                    cookieCodec.clear(request, response, COOKIE_NAME, COOKIE_PATH);
+                }
+                return;
+            }
+            if (authentication == loadedAuthentication && !renew) {
+                return;
+            }
+            Instant now = Instant.now();
+            // a renewal keeps the time of the login, any other authentication is a new login
+            Instant loggedInAt = authentication == loadedAuthentication ? loadedLoginTime : now;
+            Instant expiresAt = now.plus(timeout);
+            if (expiresAt.isAfter(loggedInAt.plus(maximumLifetime))) {
+                expiresAt = loggedInAt.plus(maximumLifetime);
+            }
+            try {
+                byte[] payload = serialize((OAuth2AuthenticationToken) authentication, loggedInAt, expiresAt);
+                cookieCodec.write(request, response, COOKIE_NAME, payload, COOKIE_PATH, Duration.between(now, expiresAt));
+            } catch (JsonProcessingException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Couldn't store the login of " + authentication.getName() + " in the session cookie", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.web.OAuth2AuthorizedClientRepository;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Doesn't keep the authorized clients of logged-in users. The webapps only need the roles of the access token, which are read once during login by the
+ * {@link TokenParsingOAuth2UserService}, so the tokens don't have to be kept in memory for every active user.
+ */
+public class DiscardingOAuth2AuthorizedClientRepository implements OAuth2AuthorizedClientRepository {
+
+    @Override
+    public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId, Authentication principal, HttpServletRequest request) {
+        return null;
+    }
+
+    @Override
+    public void saveAuthorizedClient(
+        OAuth2AuthorizedClient authorizedClient,
+        Authentication principal,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) {
+        // noop
+    }
+
+    @Override
+    public void removeAuthorizedClient(String clientRegistrationId, Authentication principal, HttpServletRequest request, HttpServletResponse response) {
+        // noop
+    }
+}
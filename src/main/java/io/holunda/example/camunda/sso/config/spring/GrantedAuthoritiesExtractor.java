@@ -1,17 +1,20 @@
 package io.holunda.example.camunda.sso.config.spring;
 
-import net.minidev.json.JSONObject;
+import io.holunda.example.camunda.sso.config.camunda.RoleMapper;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.stereotype.Component;
 
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -29,6 +32,8 @@ import static java.util.stream.Collectors.toList;
  * Please note, that the extractor does only extract the client roles of the given clientId. If no clientId is given in
  * the configuration, only the Realm roles are used for checking authorization.<br>
  * <br>
+ * Tokens of further issuers can have their roles renamed first, see {@link #withRoleMapping(RoleMapper)}.<br>
+ * <br>
  * Example:<br>
  * <pre>
  * {
@@ -69,39 +74,108 @@ public class GrantedAuthoritiesExtractor extends JwtAuthenticationConverter {
     private static final String CLIENTS_CLAIM = "resource_access";
     private static final String CLIENT_ROLE_SEPARATOR = ":";
 
-    @SuppressWarnings("unchecked")
+    private final AuthorityRegistry authorityRegistry;
+    private final SsoMetrics ssoMetrics;
+
+    public GrantedAuthoritiesExtractor(AuthorityRegistry authorityRegistry, SsoMetrics ssoMetrics) {
+        this.authorityRegistry = authorityRegistry;
+        this.ssoMetrics = ssoMetrics;
+    }
+
     @Override
     protected Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
+        long start = ssoMetrics.start();
+        Collection<GrantedAuthority> authorities = readAuthorities(jwt);
+        ssoMetrics.authoritiesExtracted(start, authorities.size());
+        return authorities;
+    }
+
+    /**
+     * @return the authorities of an opaque token, read from the realm and client roles of its introspection result.
+     */
+    public Collection<GrantedAuthority> extractAuthorities(OAuth2AuthenticatedPrincipal introspected) {
+        long start = ssoMetrics.start();
+        Map<String, Object> attributes = introspected.getAttributes();
+        List<Object> roleClaims = Arrays.asList(attributes.get(REALM_ROLES_CLAIM), attributes.get(CLIENTS_CLAIM));
+        Collection<GrantedAuthority> authorities = authorityRegistry.authorities(roleClaims, () -> buildAuthorities(() -> attributes));
+        ssoMetrics.authoritiesExtracted(start, authorities.size());
+        return authorities;
+    }
+
+    /**
+     * @return a converter for the tokens of an issuer whose roles are renamed by the given mapping before they become authorities. Roles the mapping
+     * drops don't become authorities.
+     */
+    public Converter<Jwt, AbstractAuthenticationToken> withRoleMapping(RoleMapper roleMapping) {
+        if (roleMapping.isIdentity()) {
+            return this;
+        }
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
+            long start = ssoMetrics.start();
+            Collection<GrantedAuthority> authorities = readAuthorities(jwt, roleMapping);
+            ssoMetrics.authoritiesExtracted(start, authorities.size());
+            return authorities;
+        });
+        return converter;
+    }
+
+    // the mapping is part of the memoization key, as the same roles map to different authorities per issuer
+    private Collection<GrantedAuthority> readAuthorities(Jwt jwt, RoleMapper roleMapping) {
+        Map<String, Object> claims = jwt.getClaims();
+        List<Object> roleClaims = Arrays.asList(roleMapping, claims.get(REALM_ROLES_CLAIM), claims.get(CLIENTS_CLAIM));
+        return authorityRegistry.authorities(roleClaims, () -> {
+            List<String> roles = new ArrayList<>(getRealmAuthorities(jwt));
+            roles.addAll(getClientAuthorities(jwt));
+            return toAuthorities(roleMapping.mapAll(roles).stream());
+        });
+    }
+
+    private Collection<GrantedAuthority> readAuthorities(Jwt jwt) {
+        // The raw role claims identify the resulting authorities, so tokens with the same roles share one immutable authority list.
+        Map<String, Object> claims = jwt.getClaims();
+        List<Object> roleClaims = Arrays.asList(claims.get(REALM_ROLES_CLAIM), claims.get(CLIENTS_CLAIM));
+        return authorityRegistry.authorities(roleClaims, () -> buildAuthorities(jwt));
+    }
+
+    private List<GrantedAuthority> buildAuthorities(ClaimAccessor claims) {
 
         // Retrieve client roles of all clients
-        final Collection<String> clientAuthorities = getClientAuthorities(jwt);
+        final Collection<String> clientAuthorities = getClientAuthorities(claims);
 
         // Retrieve realm roles
-        final Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ROLES_CLAIM);
+        final Collection<String> realmAuthorities = getRealmAuthorities(claims);
+
+        return toAuthorities(Stream.concat(realmAuthorities.stream(), clientAuthorities.stream()));
+    }
 
-        Collection<String> realmAuthorities = Collections.emptyList();
+    private List<GrantedAuthority> toAuthorities(Stream<String> roles) {
+        return roles.map(role -> authorityRegistry.authority(SPRING_ROLE_PREFIX + role))
+                    .collect(toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Collection<String> getRealmAuthorities(ClaimAccessor jwt) {
+        final Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ROLES_CLAIM);
         if (realmAccess != null && realmAccess.containsKey(ROLE_DECLARATIONS)) {
-            realmAuthorities = (Collection<String>) realmAccess.get(ROLE_DECLARATIONS);
+            return (Collection<String>) realmAccess.get(ROLE_DECLARATIONS);
         }
-
-        return Stream.concat(realmAuthorities.stream(), clientAuthorities.stream())
-                     .map(s -> SPRING_ROLE_PREFIX + s)
-                     .map(SimpleGrantedAuthority::new)
-                     .collect(toList());
+        return Collections.emptyList();
     }
 
+    @SuppressWarnings("unchecked")
     public static List<String> getClientAuthorities(ClaimAccessor jwt) {
         // retrieve client roles of all clients
         final List<String> clientAuthorities = new ArrayList<>();
         Map<String, Object> clientClaims = jwt.getClaimAsMap(CLIENTS_CLAIM);
         if (clientClaims != null) {
-            clientClaims.forEach((client, claims) -> clientAuthorities.addAll(extractRoles(client, (JSONObject) claims)));
+            clientClaims.forEach((client, claims) -> clientAuthorities.addAll(extractRoles(client, (Map<String, Object>) claims)));
         }
         return clientAuthorities;
     }
 
     @SuppressWarnings("unchecked")
-    static List<String> extractRoles(String client, JSONObject clientObject) {
+    static List<String> extractRoles(String client, Map<String, Object> clientObject) {
         final Collection<String> clientRoles = (Collection<String>) clientObject.get(ROLE_DECLARATIONS);
         if (clientRoles != null) {
             return clientRoles
@@ -0,0 +1,220 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * The issuers whose tokens are accepted, each with its own decoder, key set and role mapping (see {@link TrustedIssuer}). A token is routed to its
+ * issuer by the unverified {@code iss} claim, read by the {@link StreamingClaimParser} without parsing the rest of the token, and a single map lookup.
+ * Only that issuer's decoder verifies the token, including that {@code iss} is really its issuer, so a token is never tried against several issuers.
+ * With no issuer besides the one of the registration, tokens aren't read for routing at all.<br>
+ * <br>
+ * Issuers below the trusted prefix are set up on their first token, if their key set can be fetched. The first request with a new issuer fetches its
+ * key set without holding any lock, concurrent requests with the same issuer wait for that fetch, at most for the given time, and requests with other
+ * issuers aren't affected. Issuers that couldn't be set up are remembered for a while, the number of set up issuers is bounded, and so is the number
+ * of attempts per minute, so tokens with made-up issuers cost at most a few fetches per minute in total.
+ */
+public class IssuerRegistry implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(IssuerRegistry.class.getSimpleName());
+
+    private static final long MAX_UNKNOWN_ISSUERS = 1_000;
+    private static final long ATTEMPT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // a single path segment, e.g. the name of a Keycloak realm
+    private static final Pattern DISCOVERABLE_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    private final TrustedIssuer primary;
+    private final boolean single;
+    private final Map<String, TrustedIssuer> issuers = new ConcurrentHashMap<>();
+    private final String trustedPrefix;
+    private final int maximumDiscovered;
+    private final int attemptsPerMinute;
+    private final Duration maximumWait;
+    private final Function<String, TrustedIssuer> discovery;
+    private final Cache<String, Boolean> unknownIssuers;
+    private final StreamingClaimParser streamingClaimParser;
+    // the discoveries in progress, one per issuer
+    private final Map<String, CompletableFuture<TrustedIssuer>> discoveries = new ConcurrentHashMap<>();
+    private final AtomicInteger discovered = new AtomicInteger();
+    private final AtomicLong attemptWindowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger attemptsInWindow = new AtomicInteger();
+
+    /**
+     * @param discovery   sets up an issuer below the trusted prefix, returns {@code null} if it doesn't exist.
+     * @param maximumWait how long a request waits for the discovery of its issuer by another request.
+     */
+    public IssuerRegistry(
+        TrustedIssuer primary,
+        List<TrustedIssuer> configured,
+        String trustedPrefix,
+        int maximumDiscovered,
+        int attemptsPerMinute,
+        Duration maximumWait,
+        Function<String, TrustedIssuer> discovery,
+        Duration unknownIssuerTimeToLive,
+        StreamingClaimParser streamingClaimParser
+    ) {
+        this.primary = primary;
+        this.single = configured.isEmpty() && trustedPrefix == null;
+        this.trustedPrefix = trustedPrefix;
+        this.maximumDiscovered = maximumDiscovered;
+        this.attemptsPerMinute = attemptsPerMinute;
+        this.maximumWait = maximumWait;
+        this.discovery = discovery;
+        this.streamingClaimParser = streamingClaimParser;
+        this.unknownIssuers = Caffeine.newBuilder()
+                                      .maximumSize(MAX_UNKNOWN_ISSUERS)
+                                      .expireAfterWrite(unknownIssuerTimeToLive)
+                                      .build();
+        if (primary.getUri() != null) {
+            register(primary);
+        }
+        configured.forEach(this::register);
+    }
+
+    private void register(TrustedIssuer issuer) {
+        if (issuers.putIfAbsent(issuer.getUri(), issuer) != null) {
+            throw new IllegalStateException("Issuer " + issuer.getUri() + " is configured more than once");
+        }
+    }
+
+    /**
+     * @return the issuer of the given token, {@code null} if the token is not a JWT or its issuer isn't trusted.
+     */
+    public TrustedIssuer resolve(String token) {
+        if (single) {
+            return primary;
+        }
+        String issuer;
+        try {
+            issuer = streamingClaimParser.parseIssuer(token);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return issuer != null ? get(issuer) : null;
+    }
+
+    /**
+     * @return the issuer with the given URI, {@code null} if it isn't trusted.
+     */
+    public TrustedIssuer get(String issuer) {
+        TrustedIssuer trusted = issuers.get(issuer);
+        if (trusted != null || !isDiscoverable(issuer) || unknownIssuers.getIfPresent(issuer) != null) {
+            return trusted;
+        }
+        CompletableFuture<TrustedIssuer> pending = discoveries.get(issuer);
+        if (pending == null) {
+            if (!tryAttempt()) {
+                LOGGER.log(Level.FINE, "Not trusting {0} for now, too many discovery attempts", issuer);
+                return null;
+            }
+            CompletableFuture<TrustedIssuer> started = new CompletableFuture<>();
+            pending = discoveries.putIfAbsent(issuer, started);
+            if (pending == null) {
+                return discover(issuer, started);
+            }
+        }
+        return await(issuer, pending);
+    }
+
+    /**
+     * @return the issuer of the client registration used by default.
+     */
+    public TrustedIssuer getPrimary() {
+        return primary;
+    }
+
+    private boolean isDiscoverable(String issuer) {
+        return trustedPrefix != null
+            && issuer.startsWith(trustedPrefix)
+            && DISCOVERABLE_NAME.matcher(issuer).region(trustedPrefix.length(), issuer.length()).matches();
+    }
+
+    // a fixed window of one minute, a few more attempts may slip through when the window is reset concurrently
+    private boolean tryAttempt() {
+        long now = System.nanoTime();
+        long windowStart = attemptWindowStart.get();
+        if (now - windowStart >= ATTEMPT_WINDOW_NANOS && attemptWindowStart.compareAndSet(windowStart, now)) {
+            attemptsInWindow.set(0);
+        }
+        return attemptsInWindow.incrementAndGet() <= attemptsPerMinute;
+    }
+
+    // runs on the first request with the issuer. The future is completed in any case, so the requests waiting for it never hang
+    private TrustedIssuer discover(String issuer, CompletableFuture<TrustedIssuer> pending) {
+        TrustedIssuer trusted = null;
+        try {
+            trusted = setUp(issuer);
+        } finally {
+            pending.complete(trusted);
+            discoveries.remove(issuer, pending);
+        }
+        return trusted;
+    }
+
+    private TrustedIssuer setUp(String issuer) {
+        // a discovery that completed after this request looked for the issuer
+        TrustedIssuer existing = issuers.get(issuer);
+        if (existing != null || unknownIssuers.getIfPresent(issuer) != null) {
+            return existing;
+        }
+        if (discovered.get() >= maximumDiscovered) {
+            return rejectDiscovered(issuer, null);
+        }
+        TrustedIssuer trusted = discovery.apply(issuer);
+        if (trusted == null) {
+            unknownIssuers.put(issuer, Boolean.TRUE);
+            return null;
+        }
+        if (discovered.incrementAndGet() > maximumDiscovered) {
+            discovered.decrementAndGet();
+            return rejectDiscovered(issuer, trusted);
+        }
+        // published before the discovery is removed, so later requests find either of them
+        issuers.put(issuer, trusted);
+        LOGGER.log(Level.INFO, "Trusting tokens of {0}", issuer);
+        return trusted;
+    }
+
+    private TrustedIssuer rejectDiscovered(String issuer, TrustedIssuer trusted) {
+        LOGGER.log(Level.WARNING, "Not trusting {0}, already trusting the maximum of {1} issuers below {2}",
+            new Object[] {issuer, maximumDiscovered, trustedPrefix});
+        if (trusted != null) {
+            trusted.close();
+        }
+        unknownIssuers.put(issuer, Boolean.TRUE);
+        return null;
+    }
+
+    private TrustedIssuer await(String issuer, CompletableFuture<TrustedIssuer> pending) {
+        try {
+            return pending.get(maximumWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            LOGGER.log(Level.FINE, "Not trusting {0} for now, its discovery didn't complete in time", issuer);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        issuers.values().forEach(TrustedIssuer::close);
+    }
+}
@@ -0,0 +1,79 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * {@link RevocationStore} in the table {@code SSO_REVOCATION} of a relational database, e.g. the one of the process engine. The schema is created by
+ * {@link #initializeSchema()} from {@code db/sso-revocation-schema.sql}.
+ */
+public class JdbcRevocationStore implements RevocationStore {
+
+    private static final String SCHEMA = "db/sso-revocation-schema.sql";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcRevocationStore(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void initializeSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource(SCHEMA)).execute(dataSource);
+    }
+
+    @Override
+    public void revoke(Revocation revocation) {
+        if (update(revocation)) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO SSO_REVOCATION (KIND, VAL, REVOKED_AT, EXPIRY_TIME) VALUES (?, ?, ?, ?)",
+                revocation.getKind().name(),
+                revocation.getValue(),
+                revocation.getRevokedAt(),
+                revocation.getExpiryTime()
+            );
+        } catch (DuplicateKeyException e) {
+            // revoked by another node in the meantime
+            update(revocation);
+        }
+    }
+
+    private boolean update(Revocation revocation) {
+        return jdbcTemplate.update(
+            "UPDATE SSO_REVOCATION SET REVOKED_AT = ?, EXPIRY_TIME = ? WHERE KIND = ? AND VAL = ?",
+            revocation.getRevokedAt(),
+            revocation.getExpiryTime(),
+            revocation.getKind().name(),
+            revocation.getValue()
+        ) > 0;
+    }
+
+    @Override
+    public List<Revocation> findRevocations(long since) {
+        return jdbcTemplate.query(
+            "SELECT KIND, VAL, REVOKED_AT, EXPIRY_TIME FROM SSO_REVOCATION WHERE REVOKED_AT >= ? AND EXPIRY_TIME > ?",
+            (resultSet, row) -> new Revocation(
+                Revocation.Kind.valueOf(resultSet.getString(1)),
+                resultSet.getString(2),
+                resultSet.getLong(3),
+                resultSet.getLong(4)
+            ),
+            since,
+            System.currentTimeMillis()
+        );
+    }
+
+    @Override
+    public int purge(long before) {
+        return jdbcTemplate.update("DELETE FROM SSO_REVOCATION WHERE EXPIRY_TIME < ?", before);
+    }
+}
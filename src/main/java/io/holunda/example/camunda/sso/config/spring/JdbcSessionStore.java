@@ -0,0 +1,118 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link SessionStore} in the table {@code SSO_SESSION} of a relational database, e.g. the one of the process engine. The schema is created by
+ * {@link #initializeSchema()} from {@code db/sso-session-schema.sql}.<br>
+ * <br>
+ * Deleted sessions are kept as tombstones (expired, without attributes, with a new version) until they are purged, so that the deletion is visible to the
+ * change queries of all nodes.
+ */
+public class JdbcSessionStore implements SessionStore {
+
+    private static final String SCHEMA = "db/sso-session-schema.sql";
+
+    private static final String COLUMNS = "ID, VERSION, CREATION_TIME, LAST_ACCESS_TIME, MAX_INACTIVE_INTERVAL, ATTRIBUTES";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcSessionStore(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void initializeSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource(SCHEMA)).execute(dataSource);
+    }
+
+    @Override
+    public StoredSession load(String id) {
+        List<StoredSession> sessions = jdbcTemplate.query(
+            "SELECT " + COLUMNS + " FROM SSO_SESSION WHERE ID = ? AND EXPIRY_TIME > ?",
+            (resultSet, row) -> new StoredSession(
+                resultSet.getString(1),
+                resultSet.getLong(2),
+                resultSet.getLong(3),
+                resultSet.getLong(4),
+                resultSet.getInt(5),
+                resultSet.getBytes(6)
+            ),
+            id,
+            System.currentTimeMillis()
+        );
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    @Override
+    public boolean insert(StoredSession session) {
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO SSO_SESSION (" + COLUMNS + ", EXPIRY_TIME, UPDATE_TIME) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                session.getId(),
+                session.getVersion(),
+                session.getCreationTime(),
+                session.getLastAccessedTime(),
+                session.getMaxInactiveInterval(),
+                session.getAttributes(),
+                session.getExpiryTime(),
+                System.currentTimeMillis()
+            );
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean update(StoredSession session) {
+        return jdbcTemplate.update(
+            "UPDATE SSO_SESSION SET VERSION = ?, LAST_ACCESS_TIME = ?, MAX_INACTIVE_INTERVAL = ?, ATTRIBUTES = ?, EXPIRY_TIME = ?, UPDATE_TIME = ? "
+                + "WHERE ID = ? AND VERSION = ? AND EXPIRY_TIME > 0",
+            session.getVersion(),
+            session.getLastAccessedTime(),
+            session.getMaxInactiveInterval(),
+            session.getAttributes(),
+            session.getExpiryTime(),
+            System.currentTimeMillis(),
+            session.getId(),
+            session.getVersion() - 1
+        ) > 0;
+    }
+
+    @Override
+    public void delete(String id) {
+        jdbcTemplate.update(
+            "UPDATE SSO_SESSION SET VERSION = VERSION + 1, ATTRIBUTES = NULL, EXPIRY_TIME = 0, UPDATE_TIME = ? WHERE ID = ?",
+            System.currentTimeMillis(),
+            id
+        );
+    }
+
+    @Override
+    public Map<String, Long> findChanges(long since) {
+        Map<String, Long> changes = new HashMap<>();
+        jdbcTemplate.query(
+            "SELECT ID, VERSION FROM SSO_SESSION WHERE UPDATE_TIME >= ?",
+            resultSet -> {
+                changes.put(resultSet.getString(1), resultSet.getLong(2));
+            },
+            since
+        );
+        return changes;
+    }
+
+    @Override
+    public int purge(long before) {
+        return jdbcTemplate.update("DELETE FROM SSO_SESSION WHERE EXPIRY_TIME < ? AND UPDATE_TIME < ?", before, before);
+    }
+}
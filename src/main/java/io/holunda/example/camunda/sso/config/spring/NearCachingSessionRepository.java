@@ -0,0 +1,407 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spring session {@link SessionRepository} for the clustered session mode. Sessions live in a shared {@link SessionStore}, with a near cache on every
+ * node in front of it:
+ * <ul>
+ *     <li>Reads are served from the near cache. Every node polls the store for changed session versions once per {@code pollInterval} and evicts
+ *     cached sessions that were written by another node, so a session moved between nodes is stale for at most one poll interval. If polling fails, the
+ *     near cache is bypassed until it succeeds again.</li>
+ *     <li>Writes only happen if an attribute changed (compared by its serialized form) or the last persisted access is older than a tenth of the
+ *     session timeout, not on every request.</li>
+ *     <li>Writes are optimistic. If another node wrote the session in the meantime, the changed attributes are merged into its version.</li>
+ * </ul>
+ * Attributes must be serializable.
+ */
+public class NearCachingSessionRepository implements SessionRepository<NearCachingSessionRepository.ClusteredSession>, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(NearCachingSessionRepository.class.getSimpleName());
+
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+    private static final Duration MINIMUM_TOMBSTONE_RETENTION = Duration.ofMinutes(1);
+    private static final int PURGES_PER_POLL = 60;
+
+    private final SessionStore sessionStore;
+    private final Duration defaultMaxInactiveInterval;
+    private final Duration pollInterval;
+    private final Cache<String, CachedSession> nearCache;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-store-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long lastPoll;
+    private volatile long lastSuccessfulPoll;
+    private int pollsSincePurge;
+
+    public NearCachingSessionRepository(
+        SessionStore sessionStore,
+        Duration defaultMaxInactiveInterval,
+        long nearCacheSize,
+        Duration pollInterval,
+        MeterRegistry meterRegistry
+    ) {
+        this.sessionStore = sessionStore;
+        this.defaultMaxInactiveInterval = defaultMaxInactiveInterval;
+        this.pollInterval = pollInterval;
+        this.nearCache = Caffeine.newBuilder()
+                                 .maximumSize(nearCacheSize)
+                                 .expireAfterAccess(defaultMaxInactiveInterval)
+                                 .recordStats()
+                                 .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "sso.sessions");
+    }
+
+    /**
+     * Starts polling the store for changes.
+     */
+    public void start() {
+        lastPoll = System.currentTimeMillis();
+        lastSuccessfulPoll = lastPoll;
+        scheduler.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public ClusteredSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(defaultMaxInactiveInterval);
+        return new ClusteredSession(session, null, 0, Map.of(), 0);
+    }
+
+    @Override
+    public void save(ClusteredSession session) {
+        if (session.originalId != null && !session.originalId.equals(session.getId())) {
+            // the id was changed, e.g. to prevent session fixation
+            deleteById(session.originalId);
+            session.markNew();
+        }
+
+        Map<String, byte[]> serialized = serialize(session.delegate);
+        Set<String> changed = new HashSet<>();
+        serialized.forEach((name, value) -> {
+            if (!Arrays.equals(value, session.persistedAttributes.get(name))) {
+                changed.add(name);
+            }
+        });
+        Set<String> removed = new HashSet<>(session.persistedAttributes.keySet());
+        removed.removeAll(serialized.keySet());
+
+        long lastAccessedTime = session.getLastAccessedTime().toEpochMilli();
+        boolean touch = lastAccessedTime - session.persistedLastAccessedTime >= session.getMaxInactiveInterval().toMillis() / 10;
+        if (session.originalId != null && changed.isEmpty() && removed.isEmpty() && !touch) {
+            CachedSession cached = nearCache.getIfPresent(session.getId());
+            if (cached != null) {
+                cached.lastAccessedTime = Math.max(cached.lastAccessedTime, lastAccessedTime);
+            }
+            return;
+        }
+
+        StoredSession stored = write(session, serialized, changed, removed, lastAccessedTime);
+        if (stored == null) {
+            // the stored session differs from this one, the next request reads it from the store
+            nearCache.invalidate(session.getId());
+            return;
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        for (String name : session.getAttributeNames()) {
+            attributes.put(name, session.getAttribute(name));
+        }
+        nearCache.put(stored.getId(), new CachedSession(stored, serialized, attributes));
+        session.markPersisted(stored.getVersion(), serialized, lastAccessedTime);
+    }
+
+    /**
+     * @return the stored session if it now has exactly the state of the given session, {@code null} if it was merged with or lost against another write.
+     */
+    private StoredSession write(ClusteredSession session, Map<String, byte[]> serialized, Set<String> changed, Set<String> removed, long lastAccessedTime) {
+        int maxInactiveInterval = (int) session.getMaxInactiveInterval().getSeconds();
+        if (session.originalId == null) {
+            StoredSession stored = new StoredSession(session.getId(), 1, session.getCreationTime().toEpochMilli(), lastAccessedTime, maxInactiveInterval,
+                encode(serialized));
+            if (!sessionStore.insert(stored)) {
+                throw new IllegalStateException("Session " + session.getId() + " already exists");
+            }
+            return stored;
+        }
+
+        StoredSession stored = new StoredSession(session.getId(), session.version + 1, session.getCreationTime().toEpochMilli(), lastAccessedTime,
+            maxInactiveInterval, encode(serialized));
+        if (sessionStore.update(stored)) {
+            return stored;
+        }
+
+        // another node has written the session since we read it, apply our changes to its version
+        StoredSession current = sessionStore.load(session.getId());
+        if (current == null) {
+            // deleted in the meantime, e.g. logged out on another node
+            return null;
+        }
+        Map<String, byte[]> merged = new HashMap<>(decode(current.getAttributes()));
+        changed.forEach(name -> merged.put(name, serialized.get(name)));
+        merged.keySet().removeAll(removed);
+        StoredSession mergedSession = new StoredSession(session.getId(), current.getVersion() + 1, current.getCreationTime(),
+            Math.max(lastAccessedTime, current.getLastAccessedTime()), maxInactiveInterval, encode(merged));
+        if (!sessionStore.update(mergedSession)) {
+            LOGGER.log(Level.FINE, "Concurrent writes to session {0}, dropping the changes of this request", session.getId());
+        }
+        return null;
+    }
+
+    @Override
+    public ClusteredSession findById(String id) {
+        CachedSession cached = isNearCacheValid() ? nearCache.getIfPresent(id) : null;
+        if (cached == null) {
+            StoredSession stored = sessionStore.load(id);
+            if (stored == null) {
+                nearCache.invalidate(id);
+                return null;
+            }
+            Map<String, byte[]> serialized = decode(stored.getAttributes());
+            cached = new CachedSession(stored, serialized, deserialize(serialized));
+            nearCache.put(id, cached);
+        }
+
+        StoredSession stored = cached.stored;
+        MapSession session = new MapSession(id);
+        session.setCreationTime(Instant.ofEpochMilli(stored.getCreationTime()));
+        session.setLastAccessedTime(Instant.ofEpochMilli(Math.max(stored.getLastAccessedTime(), cached.lastAccessedTime)));
+        session.setMaxInactiveInterval(Duration.ofSeconds(stored.getMaxInactiveInterval()));
+        if (session.isExpired()) {
+            deleteById(id);
+            return null;
+        }
+        cached.attributes.forEach(session::setAttribute);
+        return new ClusteredSession(session, id, stored.getVersion(), cached.serializedAttributes, stored.getLastAccessedTime());
+    }
+
+    @Override
+    public void deleteById(String id) {
+        sessionStore.delete(id);
+        nearCache.invalidate(id);
+    }
+
+    private boolean isNearCacheValid() {
+        return System.currentTimeMillis() - lastSuccessfulPoll < 3 * pollInterval.toMillis();
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+        try {
+            Map<String, Long> changes = sessionStore.findChanges(lastPoll - CLOCK_SKEW.toMillis());
+            changes.forEach((id, version) -> {
+                CachedSession cached = nearCache.getIfPresent(id);
+                if (cached != null && cached.stored.getVersion() < version) {
+                    nearCache.invalidate(id);
+                }
+            });
+            lastPoll = now;
+            lastSuccessfulPoll = now;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Polling the session store failed, bypassing the near cache", e);
+            nearCache.invalidateAll();
+            return;
+        }
+
+        if (++pollsSincePurge >= PURGES_PER_POLL) {
+            pollsSincePurge = 0;
+            purge(now);
+        }
+    }
+
+    private void purge(long now) {
+        long retention = Math.max(MINIMUM_TOMBSTONE_RETENTION.toMillis(), 10 * pollInterval.toMillis());
+        try {
+            int purged = sessionStore.purge(now - retention);
+            LOGGER.log(Level.FINE, "Purged {0} sessions", purged);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Purging expired sessions failed", e);
+        }
+    }
+
+    private static Map<String, byte[]> serialize(MapSession session) {
+        Map<String, byte[]> serialized = new HashMap<>();
+        for (String name : session.getAttributeNames()) {
+            serialized.put(name, toBytes(session.getAttribute(name)));
+        }
+        return serialized;
+    }
+
+    private static Map<String, Object> deserialize(Map<String, byte[]> attributes) {
+        Map<String, Object> deserialized = new HashMap<>();
+        attributes.forEach((name, value) -> deserialized.put(name, fromBytes(value)));
+        return deserialized;
+    }
+
+    private static byte[] encode(Map<String, byte[]> attributes) {
+        return toBytes(new HashMap<>(attributes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, byte[]> decode(byte[] attributes) {
+        return attributes == null ? Map.of() : (Map<String, byte[]>) fromBytes(attributes);
+    }
+
+    private static byte[] toBytes(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't serialize session attribute of type " + value.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object fromBytes(byte[] bytes) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), ClassUtils.getDefaultClassLoader())) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Couldn't deserialize session attribute", e);
+        }
+    }
+
+    /**
+     * The near cache entry of a session: the stored session and its deserialized attributes, which are shared by all concurrent requests of the session
+     * on this node, as they would be with a servlet session.
+     */
+    private static class CachedSession {
+
+        private final StoredSession stored;
+        private final Map<String, byte[]> serializedAttributes;
+        private final Map<String, Object> attributes;
+        private volatile long lastAccessedTime;
+
+        CachedSession(StoredSession stored, Map<String, byte[]> serializedAttributes, Map<String, Object> attributes) {
+            this.stored = stored;
+            this.serializedAttributes = serializedAttributes;
+            this.attributes = attributes;
+            this.lastAccessedTime = stored.getLastAccessedTime();
+        }
+    }
+
+    /**
+     * A session of the current request, remembering what was persisted so that {@link #save(ClusteredSession)} can detect changes.
+     */
+    public static class ClusteredSession implements Session {
+
+        private final MapSession delegate;
+        private String originalId;
+        private long version;
+        private Map<String, byte[]> persistedAttributes;
+        private long persistedLastAccessedTime;
+
+        ClusteredSession(MapSession delegate, String originalId, long version, Map<String, byte[]> persistedAttributes, long persistedLastAccessedTime) {
+            this.delegate = delegate;
+            this.originalId = originalId;
+            this.version = version;
+            this.persistedAttributes = persistedAttributes;
+            this.persistedLastAccessedTime = persistedLastAccessedTime;
+        }
+
+        private void markNew() {
+            originalId = null;
+            version = 0;
+            persistedAttributes = Map.of();
+        }
+
+        private void markPersisted(long version, Map<String, byte[]> persistedAttributes, long persistedLastAccessedTime) {
+            this.originalId = getId();
+            this.version = version;
+            this.persistedAttributes = persistedAttributes;
+            this.persistedLastAccessedTime = persistedLastAccessedTime;
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            delegate.setLastAccessedTime(lastAccessedTime);
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
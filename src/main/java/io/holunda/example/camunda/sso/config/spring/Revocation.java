@@ -0,0 +1,66 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+/**
+ * A revoked token, session or user as kept by a {@link RevocationStore}. Times are epoch millis.
+ */
+public class Revocation {
+
+    /**
+     * What is revoked, identified by the value of a token claim.
+     */
+    public enum Kind {
+        /**
+         * A single token, by its {@code jti} claim.
+         */
+        JTI("jti"),
+        /**
+         * All tokens of a session at the identity provider, by the {@code sid} claim. Keycloak puts the same value into {@code session_state}.
+         */
+        SID("sid"),
+        /**
+         * All tokens of a user issued up to the revocation, by the {@code sub} claim. Tokens of later logins are accepted.
+         */
+        SUB("sub");
+
+        private final String claim;
+
+        Kind(String claim) {
+            this.claim = claim;
+        }
+
+        public String getClaim() {
+            return claim;
+        }
+    }
+
+    private final Kind kind;
+    private final String value;
+    private final long revokedAt;
+    private final long expiryTime;
+
+    public Revocation(Kind kind, String value, long revokedAt, long expiryTime) {
+        this.kind = kind;
+        this.value = value;
+        this.revokedAt = revokedAt;
+        this.expiryTime = expiryTime;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+
+    /**
+     * After this time no token affected by the revocation is valid anymore, so the revocation can be forgotten.
+     */
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+}
@@ -0,0 +1,44 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * Ends the webapp login of a user if the access token it was created from, its session at the identity provider or the user has been revoked since,
+ * see {@link RevocationList}. The user's attributes are the claims of that token (see {@link TokenParsingOAuth2UserService}), so no token has to be
+ * kept for the check.<br>
+ * <br>
+ * The security context is cleared, which also removes the session cookie in stateless mode, and the http session is invalidated, which drops the
+ * webapp authentication of camunda as well. The request continues unauthenticated and is redirected to the login.
+ */
+public class RevocationFilter extends OncePerRequestFilter {
+
+    private final RevocationList revocationList;
+
+    public RevocationFilter(RevocationList revocationList) {
+        this.revocationList = revocationList;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof OAuth2AuthenticationToken
+            && revocationList.isRevoked(((OAuth2AuthenticationToken) authentication).getPrincipal().getAttributes())) {
+            SecurityContextHolder.clearContext();
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                session.invalidate();
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
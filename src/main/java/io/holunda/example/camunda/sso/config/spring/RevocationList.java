@@ -0,0 +1,254 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import io.holunda.example.camunda.sso.config.spring.Revocation.Kind;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The tokens, sessions and users revoked on any node, checked on every authentication in addition to the signature and expiry of the token. Revocations
+ * are written to a {@link RevocationStore} shared by all nodes, and every node polls the store for the revocations of the others. Checking a token
+ * never leaves the node:
+ * <ul>
+ *     <li>A bloom filter over all revoked values answers "not revoked" for almost every token with a few bit tests, without a map lookup or any
+ *     allocation.</li>
+ *     <li>Only values the filter may contain are looked up in the exact revocations, which also resolve the false positives of the filter.</li>
+ * </ul>
+ * A token is revoked if its {@code jti} or its session ({@code sid}, or Keycloak's {@code session_state}) is revoked, or if its user ({@code sub}) was
+ * revoked at or after the token was issued. As {@code iat} has a precision of seconds, this includes tokens issued within the second of the revocation.
+ * <br>
+ * Revocations are kept for the configured retention, which must be longer than any token or webapp session that they should affect lives. If polling
+ * the store fails, the revocations known so far stay in effect and the missed ones are applied with the next successful poll.
+ */
+public class RevocationList implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(RevocationList.class.getSimpleName());
+
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+    private static final int PURGES_PER_POLL = 60;
+    private static final String ISSUED_AT = "iat";
+    private static final String KEYCLOAK_SESSION_CLAIM = "session_state";
+
+    private final RevocationStore revocationStore;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final int expectedRevocations;
+    private final SsoMetrics ssoMetrics;
+    private final Map<Kind, Map<String, Revocation>> revocations = new EnumMap<>(Kind.class);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "revocation-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile BloomFilter filter;
+    private int size; // guarded by this
+    private long lastPoll;
+    private int pollsSincePurge;
+
+    public RevocationList(RevocationStore revocationStore, Duration pollInterval, Duration retention, int expectedRevocations, SsoMetrics ssoMetrics) {
+        this.revocationStore = revocationStore;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+        this.expectedRevocations = expectedRevocations;
+        this.ssoMetrics = ssoMetrics;
+        for (Kind kind : Kind.values()) {
+            revocations.put(kind, new ConcurrentHashMap<>());
+        }
+        this.filter = new BloomFilter(expectedRevocations);
+    }
+
+    /**
+     * Loads the revocations of the store and starts polling it for new ones.
+     */
+    public void start() {
+        poll();
+        scheduler.scheduleWithFixedDelay(this::poll, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Revokes a token, session or user on all nodes. It is in effect on this node immediately and on the other nodes after their next poll.
+     */
+    public void revoke(Kind kind, String value) {
+        long now = System.currentTimeMillis();
+        Revocation revocation = new Revocation(kind, value, now, now + retention.toMillis());
+        revocationStore.revoke(revocation);
+        add(revocation);
+    }
+
+    /**
+     * @param claims the claims of a verified token, or the attributes of an introspected token or of a user created from a token.
+     */
+    public boolean isRevoked(Map<String, Object> claims) {
+        BloomFilter filter = this.filter;
+        Object session = claims.get(Kind.SID.getClaim());
+        if (find(filter, Kind.JTI, claims.get(Kind.JTI.getClaim())) != null
+            || find(filter, Kind.SID, session != null ? session : claims.get(KEYCLOAK_SESSION_CLAIM)) != null) {
+            ssoMetrics.revocationRejected();
+            return true;
+        }
+        Revocation user = find(filter, Kind.SUB, claims.get(Kind.SUB.getClaim()));
+        if (user != null && issuedAt(claims.get(ISSUED_AT)) <= user.getRevokedAt()) {
+            ssoMetrics.revocationRejected();
+            return true;
+        }
+        return false;
+    }
+
+    private Revocation find(BloomFilter filter, Kind kind, Object value) {
+        if (!(value instanceof String) || !filter.mightContain(kind, (String) value)) {
+            return null;
+        }
+        return revocations.get(kind).get(value);
+    }
+
+    // tokens without a readable iat are treated as issued before any revocation of their user
+    private static long issuedAt(Object issuedAt) {
+        if (issuedAt instanceof Instant) {
+            return ((Instant) issuedAt).toEpochMilli();
+        }
+        if (issuedAt instanceof Number) {
+            return ((Number) issuedAt).longValue() * 1000;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    // the exact revocation is published before the bits of the filter, so a reader that passes the filter also finds it
+    private synchronized void add(Revocation revocation) {
+        Map<String, Revocation> values = revocations.get(revocation.getKind());
+        Revocation previous = values.get(revocation.getValue());
+        if (previous != null && previous.getRevokedAt() >= revocation.getRevokedAt()) {
+            return;
+        }
+        values.put(revocation.getValue(), revocation);
+        if (previous != null) {
+            return;
+        }
+        if (++size > filter.getCapacity()) {
+            rebuild();
+        } else {
+            filter.add(revocation.getKind(), revocation.getValue());
+        }
+    }
+
+    // expired revocations can't be removed from a bloom filter, so it is replaced by a new one sized for the current revocations
+    private synchronized void rebuild() {
+        size = revocations.values().stream().mapToInt(Map::size).sum();
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, 2 * size));
+        revocations.forEach((kind, values) -> values.keySet().forEach(value -> rebuilt.add(kind, value)));
+        filter = rebuilt;
+    }
+
+    private synchronized void forgetExpired(long now) {
+        boolean removed = false;
+        for (Map<String, Revocation> values : revocations.values()) {
+            removed |= values.values().removeIf(revocation -> revocation.getExpiryTime() < now);
+        }
+        if (removed) {
+            rebuild();
+        }
+    }
+
+    private void poll() {
+        long now = System.currentTimeMillis();
+        try {
+            for (Revocation revocation : revocationStore.findRevocations(lastPoll - CLOCK_SKEW.toMillis())) {
+                add(revocation);
+            }
+            lastPoll = now;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Polling the revocation store failed, revocations of other nodes are applied with the next successful poll", e);
+            return;
+        }
+
+        if (++pollsSincePurge >= PURGES_PER_POLL) {
+            pollsSincePurge = 0;
+            purge(now);
+        }
+    }
+
+    private void purge(long now) {
+        try {
+            int purged = revocationStore.purge(now);
+            LOGGER.log(Level.FINE, "Purged {0} revocations", purged);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Purging expired revocations failed", e);
+        }
+        forgetExpired(now);
+    }
+
+    /**
+     * A bloom filter with about ten bits and seven probes per value, for a false positive rate of about 1% at capacity. Writers are serialized by
+     * the {@link RevocationList}, readers don't lock.
+     */
+    private static class BloomFilter {
+
+        private static final int BITS_PER_VALUE = 10;
+        private static final int PROBES = 7;
+        private static final int MAXIMUM_BITS = 1 << 30;
+
+        private final int capacity;
+        private final AtomicLongArray words;
+        private final int mask;
+
+        BloomFilter(int capacity) {
+            this.capacity = capacity;
+            long wanted = Math.max(Long.SIZE, (long) capacity * BITS_PER_VALUE);
+            int bits = (int) Math.min(MAXIMUM_BITS, Long.highestOneBit(wanted - 1) << 1);
+            this.words = new AtomicLongArray(bits / Long.SIZE);
+            this.mask = bits - 1;
+        }
+
+        int getCapacity() {
+            return capacity;
+        }
+
+        void add(Kind kind, String value) {
+            long hash = hash(kind, value);
+            int first = (int) hash;
+            int step = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (first + i * step) & mask;
+                int word = bit >>> 6;
+                words.set(word, words.get(word) | 1L << bit);
+            }
+        }
+
+        boolean mightContain(Kind kind, String value) {
+            long hash = hash(kind, value);
+            int first = (int) hash;
+            int step = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (first + i * step) & mask;
+                if ((words.get(bit >>> 6) & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // strings cache their hash code, and the claims of a cached authentication are the same instances on every request
+        private static long hash(Kind kind, String value) {
+            long hash = (value.hashCode() + ((long) kind.ordinal() << 32)) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hash *= 0xC4CEB9FE1A85EC53L;
+            return hash ^ hash >>> 33;
+        }
+    }
+}
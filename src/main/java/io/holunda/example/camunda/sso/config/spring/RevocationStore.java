@@ -0,0 +1,26 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import java.util.List;
+
+/**
+ * The shared storage of revoked tokens, sessions and users, see {@link RevocationList}.
+ */
+public interface RevocationStore {
+
+    /**
+     * Stores the revocation. If the same value was revoked before, the revocation time and expiry are replaced.
+     */
+    void revoke(Revocation revocation);
+
+    /**
+     * @return all revocations made at or after the given epoch millis that haven't expired yet.
+     */
+    List<Revocation> findRevocations(long since);
+
+    /**
+     * Removes revocations that expired before the given epoch millis.
+     *
+     * @return the number of removed revocations.
+     */
+    int purge(long before);
+}
@@ -0,0 +1,44 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import java.util.Map;
+
+/**
+ * The shared storage of the clustered session mode, see {@link NearCachingSessionRepository}. Writes are optimistic: they only succeed if the stored
+ * version is the one the writer has read.
+ */
+public interface SessionStore {
+
+    /**
+     * @return the session or {@code null}, if it doesn't exist, was deleted or has expired.
+     */
+    StoredSession load(String id);
+
+    /**
+     * @return {@code false} if a session with the same id exists.
+     */
+    boolean insert(StoredSession session);
+
+    /**
+     * Replaces the session if its stored version is {@code session.getVersion() - 1}.
+     *
+     * @return {@code false} if the session was changed or deleted in the meantime.
+     */
+    boolean update(StoredSession session);
+
+    /**
+     * Marks the session as deleted, so other nodes see the deletion via {@link #findChanges(long)}.
+     */
+    void delete(String id);
+
+    /**
+     * @return the ids and current versions of all sessions written or deleted at or after the given epoch millis.
+     */
+    Map<String, Long> findChanges(long since);
+
+    /**
+     * Removes sessions that expired or were deleted before the given epoch millis.
+     *
+     * @return the number of removed sessions.
+     */
+    int purge(long before);
+}
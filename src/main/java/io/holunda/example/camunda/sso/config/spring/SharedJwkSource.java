@@ -0,0 +1,227 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link JWKSource} of an issuer, shared by every JWT decoder of the application that verifies its tokens. The key set is fetched eagerly on
+ * {@link #start()} and refreshed in the background shortly before its time to live ends, so request threads normally never wait for the JWKS
+ * endpoint. If a refresh fails, the previously fetched keys are served until the next refresh succeeds.<br>
+ * <br>
+ * A token signed with an unknown key id triggers a refresh, but at most once per {@code minimumRefreshInterval} to protect the identity provider from
+ * tokens with made-up key ids. The refresh runs on the background thread and all request threads needing it share the one fetch, so a key rotation
+ * costs a single fetch. With a {@code maximumWait}, request threads give up waiting after it and the token is rejected instead of blocking the thread
+ * for the whole fetch. Key ids still unknown after a refresh are remembered until the next refresh is allowed and rejected without waiting.
+ */
+public class SharedJwkSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SharedJwkSource.class.getSimpleName());
+
+    private static final int JWKS_SIZE_LIMIT = 512 * 1024;
+    private static final long MAX_UNKNOWN_KEY_IDS = 1_000;
+
+    private final URL jwkSetUrl;
+    private final Duration timeToLive;
+    private final Duration refreshAhead;
+    private final Duration minimumRefreshInterval;
+    private final int timeoutMillis;
+    private final Duration maximumWait;
+    private final SsoMetrics ssoMetrics;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicReference<CompletableFuture<JWKSet>> pendingRefresh = new AtomicReference<>();
+    private final Cache<String, Boolean> unknownKeyIds;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwks-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile JWKSet keys;
+    private volatile Instant lastAttempt = Instant.EPOCH;
+
+    public SharedJwkSource(
+        URL jwkSetUrl,
+        Duration timeToLive,
+        Duration refreshAhead,
+        Duration minimumRefreshInterval,
+        Duration timeout,
+        Duration maximumWait,
+        SsoMetrics ssoMetrics
+    ) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.timeToLive = timeToLive;
+        this.refreshAhead = refreshAhead;
+        this.minimumRefreshInterval = minimumRefreshInterval;
+        this.timeoutMillis = (int) timeout.toMillis();
+        this.maximumWait = maximumWait;
+        this.ssoMetrics = ssoMetrics;
+        this.unknownKeyIds = Caffeine.newBuilder()
+                                     .maximumSize(MAX_UNKNOWN_KEY_IDS)
+                                     .expireAfterWrite(minimumRefreshInterval)
+                                     .build();
+    }
+
+    /**
+     * Fetches the key set and schedules the background refresh. A failing first fetch is logged but does not prevent the application from starting.
+     */
+    public void start() {
+        try {
+            refresh();
+        } catch (KeySourceException e) {
+            LOGGER.log(Level.WARNING, "Initial fetch of " + jwkSetUrl + " failed, retrying on first use", e);
+        }
+        long periodMillis = Math.max(timeToLive.minus(refreshAhead).toMillis(), minimumRefreshInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(this::refreshInBackground, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether keys have been fetched successfully.
+     */
+    public boolean hasKeys() {
+        return keys != null;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet current = keys;
+        if (current == null) {
+            if (!isRefreshAllowed() && pendingRefresh.get() == null) {
+                throw new KeySourceException("No keys available from " + jwkSetUrl);
+            }
+            current = awaitRefresh();
+        }
+        List<JWK> matches = jwkSelector.select(current);
+        if (matches.isEmpty()) {
+            Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+            if (keyIds != null && keyIds.stream().allMatch(keyId -> unknownKeyIds.getIfPresent(keyId) != null)) {
+                return matches;
+            }
+            if (isRefreshAllowed() || pendingRefresh.get() != null) {
+                // probably a key rotation, the token references a key we haven't seen yet
+                matches = jwkSelector.select(awaitRefresh());
+                if (matches.isEmpty() && keyIds != null) {
+                    keyIds.forEach(keyId -> unknownKeyIds.put(keyId, Boolean.TRUE));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private boolean isRefreshAllowed() {
+        return lastAttempt.plus(minimumRefreshInterval).isBefore(Instant.now());
+    }
+
+    /**
+     * Waits for the pending refresh or starts one, for at most {@code maximumWait} if set.
+     */
+    private JWKSet awaitRefresh() throws KeySourceException {
+        CompletableFuture<JWKSet> refresh = refreshAsync();
+        try {
+            return maximumWait != null ? refresh.get(maximumWait.toMillis(), TimeUnit.MILLISECONDS) : refresh.get();
+        } catch (TimeoutException e) {
+            throw new KeySourceException("Timed out waiting for the JWK set from " + jwkSetUrl, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof KeySourceException) {
+                throw (KeySourceException) e.getCause();
+            }
+            throw new KeySourceException("Couldn't retrieve JWK set from " + jwkSetUrl, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted while waiting for the JWK set from " + jwkSetUrl, e);
+        }
+    }
+
+    private CompletableFuture<JWKSet> refreshAsync() {
+        while (true) {
+            CompletableFuture<JWKSet> pending = pendingRefresh.get();
+            if (pending != null) {
+                return pending;
+            }
+            JWKSet current = keys;
+            if (current != null && !isRefreshAllowed()) {
+                // a refresh completed since the caller checked
+                return CompletableFuture.completedFuture(current);
+            }
+            CompletableFuture<JWKSet> refresh = new CompletableFuture<>();
+            if (pendingRefresh.compareAndSet(null, refresh)) {
+                scheduler.execute(() -> {
+                    try {
+                        refresh.complete(refresh());
+                    } catch (KeySourceException | RuntimeException e) {
+                        refresh.completeExceptionally(e);
+                    } finally {
+                        pendingRefresh.compareAndSet(refresh, null);
+                    }
+                });
+                return refresh;
+            }
+        }
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } catch (KeySourceException e) {
+            LOGGER.log(Level.WARNING, "Refreshing " + jwkSetUrl + " failed, keeping previous keys", e);
+        }
+    }
+
+    /**
+     * Fetches the key set on the calling thread. Concurrent callers wait for a single fetch. If the fetch fails, stale keys are returned if there are any.
+     */
+    JWKSet refresh() throws KeySourceException {
+        Instant requestedAt = Instant.now();
+        refreshLock.lock();
+        try {
+            if (keys != null && lastAttempt.isAfter(requestedAt)) {
+                // another thread fetched the keys while we were waiting
+                return keys;
+            }
+            long start = ssoMetrics.start();
+            try {
+                keys = JWKSet.load(jwkSetUrl, timeoutMillis, timeoutMillis, JWKS_SIZE_LIMIT);
+                unknownKeyIds.invalidateAll();
+                ssoMetrics.jwksFetched(start, true);
+                return keys;
+            } catch (Exception e) {
+                ssoMetrics.jwksFetched(start, false);
+                if (keys == null) {
+                    throw new KeySourceException("Couldn't retrieve JWK set from " + jwkSetUrl, e);
+                }
+                LOGGER.log(Level.WARNING, "Couldn't retrieve JWK set from " + jwkSetUrl + ", serving stale keys", e);
+                return keys;
+            } finally {
+                lastAttempt = Instant.now();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+}
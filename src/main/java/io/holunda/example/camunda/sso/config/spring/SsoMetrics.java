@@ -0,0 +1,205 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of the SSO integration, published via micrometer (see {@code /actuator/metrics} and {@code /actuator/prometheus}):
+ * <ul>
+ *     <li>{@code sso.jwt.decode}: authentication of bearer tokens by the resource server, tagged with the outcome {@code verified}, {@code cached} or
+ *     {@code rejected}.</li>
+ *     <li>{@code sso.token.introspection}: authentication of opaque bearer tokens by introspection, tagged with the outcome {@code active},
+ *     {@code cached} or {@code rejected}.</li>
+ *     <li>{@code sso.authorities.extraction} and {@code sso.authorities.roles}: time to derive the authorities of a token and the number of roles.</li>
+ *     <li>{@code sso.jwks.fetch}: fetches of the JWK set, tagged with the outcome {@code success} or {@code failure}.</li>
+ *     <li>{@code sso.identity.queries}: queries of the {@code OAuthIdentityServiceProvider}, tagged with the {@link QueryType type} and the
+ *     {@link QueryOperation operation}.</li>
+ *     <li>{@code sso.container.authentication}: the authentication of webapp requests by camunda's {@code ContainerBasedAuthenticationFilter}.</li>
+ *     <li>{@code sso.rest.exceptions}: error responses of the camunda REST API, tagged with the status.</li>
+ *     <li>{@code sso.rest.errors.suppressed}: server errors of the camunda REST API that were not logged because the same error was logged
+ *     recently.</li>
+ *     <li>{@code sso.revocations.rejected}: tokens and webapp logins rejected because the token, its session or its user was revoked, see
+ *     {@link RevocationList}.</li>
+ * </ul>
+ * All meters except the per-status counters are registered upfront, so recording is a plain field access. If disabled with
+ * {@code application.metrics.enabled=false}, every method returns immediately without reading the clock.
+ */
+@Component
+public class SsoMetrics {
+
+    /**
+     * Records nothing, e.g. for components created outside of spring.
+     */
+    public static final SsoMetrics DISABLED = new SsoMetrics(false, null);
+
+    public enum QueryType {USER, GROUP, TENANT}
+
+    public enum QueryOperation {SINGLE, LIST, COUNT}
+
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+
+    private final Timer tokenVerified;
+    private final Timer tokenCached;
+    private final Timer tokenRejected;
+    private final Timer introspectionActive;
+    private final Timer introspectionCached;
+    private final Timer introspectionRejected;
+    private final Timer authorityExtraction;
+    private final DistributionSummary roleCount;
+    private final Timer jwksFetchSuccess;
+    private final Timer jwksFetchFailure;
+    private final Timer containerAuthenticationSuccess;
+    private final Timer containerAuthenticationFailure;
+    private final Timer[][] identityQueries;
+    private final Counter restErrorsSuppressed;
+    private final Counter revocationsRejected;
+    private final Map<Integer, Counter> restExceptions = new ConcurrentHashMap<>();
+
+    public SsoMetrics(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this(applicationProperties.getMetrics().isEnabled(), meterRegistry);
+    }
+
+    private SsoMetrics(boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.meterRegistry = meterRegistry;
+        if (!enabled) {
+            tokenVerified = tokenCached = tokenRejected = authorityExtraction = null;
+            introspectionActive = introspectionCached = introspectionRejected = null;
+            jwksFetchSuccess = jwksFetchFailure = containerAuthenticationSuccess = containerAuthenticationFailure = null;
+            roleCount = null;
+            identityQueries = null;
+            restErrorsSuppressed = revocationsRejected = null;
+            return;
+        }
+
+        tokenVerified = timer("sso.jwt.decode", "Authentication of bearer tokens", "outcome", "verified");
+        tokenCached = timer("sso.jwt.decode", "Authentication of bearer tokens", "outcome", "cached");
+        tokenRejected = timer("sso.jwt.decode", "Authentication of bearer tokens", "outcome", "rejected");
+        introspectionActive = timer("sso.token.introspection", "Authentication of opaque bearer tokens", "outcome", "active");
+        introspectionCached = timer("sso.token.introspection", "Authentication of opaque bearer tokens", "outcome", "cached");
+        introspectionRejected = timer("sso.token.introspection", "Authentication of opaque bearer tokens", "outcome", "rejected");
+        authorityExtraction = timer("sso.authorities.extraction", "Extraction of the authorities of a token");
+        roleCount = DistributionSummary.builder("sso.authorities.roles")
+                                       .description("Number of roles of a token")
+                                       .baseUnit("roles")
+                                       .publishPercentileHistogram()
+                                       .register(meterRegistry);
+        jwksFetchSuccess = timer("sso.jwks.fetch", "Fetches of the JWK set", "outcome", "success");
+        jwksFetchFailure = timer("sso.jwks.fetch", "Fetches of the JWK set", "outcome", "failure");
+        containerAuthenticationSuccess = timer("sso.container.authentication", "Authentication of webapp requests", "outcome", "success");
+        containerAuthenticationFailure = timer("sso.container.authentication", "Authentication of webapp requests", "outcome", "unsuccessful");
+
+        restErrorsSuppressed = Counter.builder("sso.rest.errors.suppressed")
+                                      .description("Server errors of the camunda REST API not logged as repeats")
+                                      .register(meterRegistry);
+        revocationsRejected = Counter.builder("sso.revocations.rejected")
+                                     .description("Tokens and webapp logins rejected as revoked")
+                                     .register(meterRegistry);
+
+        identityQueries = new Timer[QueryType.values().length][QueryOperation.values().length];
+        for (QueryType type : QueryType.values()) {
+            for (QueryOperation operation : QueryOperation.values()) {
+                identityQueries[type.ordinal()][operation.ordinal()] = timer("sso.identity.queries", "Queries of the identity provider",
+                    "type", type.name().toLowerCase(Locale.ROOT), "operation", operation.name().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * @return the start time to pass to one of the recording methods, {@code 0} if disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void tokenVerified(long start) {
+        record(tokenVerified, start);
+    }
+
+    public void tokenCached(long start) {
+        record(tokenCached, start);
+    }
+
+    public void tokenRejected(long start) {
+        record(tokenRejected, start);
+    }
+
+    public void tokenIntrospected(long start) {
+        record(introspectionActive, start);
+    }
+
+    public void introspectionCached(long start) {
+        record(introspectionCached, start);
+    }
+
+    public void introspectionRejected(long start) {
+        record(introspectionRejected, start);
+    }
+
+    public void authoritiesExtracted(long start, int roles) {
+        if (enabled) {
+            record(authorityExtraction, start);
+            roleCount.record(roles);
+        }
+    }
+
+    public void jwksFetched(long start, boolean success) {
+        record(success ? jwksFetchSuccess : jwksFetchFailure, start);
+    }
+
+    public void identityQuery(long start, QueryType type, QueryOperation operation) {
+        if (enabled) {
+            record(identityQueries[type.ordinal()][operation.ordinal()], start);
+        }
+    }
+
+    public void containerAuthentication(long start, boolean success) {
+        record(success ? containerAuthenticationSuccess : containerAuthenticationFailure, start);
+    }
+
+    public void restException(int status) {
+        if (enabled) {
+            restExceptions.computeIfAbsent(status, ignored -> Counter.builder("sso.rest.exceptions")
+                                                                   .description("Error responses of the camunda REST API")
+                                                                   .tag("status", String.valueOf(status))
+                                                                   .register(meterRegistry))
+                          .increment();
+        }
+    }
+
+    public void restErrorSuppressed() {
+        if (enabled) {
+            restErrorsSuppressed.increment();
+        }
+    }
+
+    public void revocationRejected() {
+        if (enabled) {
+            revocationsRejected.increment();
+        }
+    }
+
+    private void record(Timer timer, long start) {
+        if (enabled) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+    }
+}
@@ -0,0 +1,107 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Adds {@code Cache-Control} and {@code ETag} headers to the static resources classified by a {@link StaticResourceMatcher} and answers conditional
+ * requests for them with {@code 304 Not Modified} without serving the resource at all.<br>
+ * <br>
+ * The static resources only change with a new deployment, so the ETag is the same for all of them: the version of the webapps, which changes their
+ * resources, combined with the build of the application, which changes e.g. plugins and {@code config.js}. If either is unknown, the start time of
+ * the node stands in for it. Hashing the content of every response, like {@code ShallowEtagHeaderFilter} does, isn't needed. Error responses are
+ * marked as not cacheable.
+ */
+public class StaticResourceCacheFilter extends OncePerRequestFilter {
+
+    private final StaticResourceMatcher staticResources;
+    private final String cacheControl;
+    private final String etag;
+
+    /**
+     * @param webappVersion      the version of the camunda webapps, {@code null} if unknown.
+     * @param applicationVersion identifies the build of the application, {@code null} if unknown.
+     */
+    public StaticResourceCacheFilter(StaticResourceMatcher staticResources, Duration maxAge, String webappVersion, String applicationVersion) {
+        this.staticResources = staticResources;
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds();
+        String startTime = Long.toString(System.currentTimeMillis(), 36);
+        this.etag = "W/\"" + (webappVersion != null ? webappVersion : startTime) + "-" + (applicationVersion != null ? applicationVersion : startTime) + "\"";
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !isGetOrHead(request) || !staticResources.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (matchesEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        filterChain.doFilter(request, new UncachedErrorResponse(response));
+    }
+
+    private boolean matchesEtag(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // weak comparison, see RFC 7232 section 3.2, the header is a list that usually holds a single entry. "*" isn't honoured, as this filter
+        // doesn't know whether the resource exists
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals(etag) || candidate.equals(etag.substring(2))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isGetOrHead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+    // the servlet API can't remove headers, so the cache headers of error responses are overwritten instead
+    private static class UncachedErrorResponse extends HttpServletResponseWrapper {
+
+        UncachedErrorResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            super.setStatus(sc);
+            onStatus(sc);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            onStatus(sc);
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            onStatus(sc);
+            super.sendError(sc, msg);
+        }
+
+        private void onStatus(int sc) {
+            if (sc >= HttpServletResponse.SC_BAD_REQUEST) {
+                setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classifies requests for static resources, i.e. files with one of the given extensions below one of the given path prefixes. The prefixes are
+ * compiled into a trie, so a request is classified in a single pass over its path without pattern matching or allocations besides the extension.
+ * Paths containing path parameters ({@code ;}), encoded characters or {@code ..} are never static, so that they don't bypass security under another
+ * name.
+ */
+public final class StaticResourceMatcher implements RequestMatcher {
+
+    private final Node prefixes = new Node();
+    private final Set<String> extensions;
+
+    public StaticResourceMatcher(Collection<String> prefixes, Set<String> extensions) {
+        for (String prefix : prefixes) {
+            Node node = this.prefixes;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), ignored -> new Node());
+            }
+            node.terminal = true;
+        }
+        this.extensions = Set.copyOf(extensions);
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        int contextPathLength = request.getContextPath().length();
+        return isStatic(uri, contextPathLength);
+    }
+
+    /**
+     * @return whether the path (without context path) denotes a static resource.
+     */
+    public boolean isStatic(String path) {
+        return isStatic(path, 0);
+    }
+
+    private boolean isStatic(String uri, int start) {
+        Node node = prefixes;
+        int i = start;
+        while (!node.terminal) {
+            if (i == uri.length()) {
+                return false;
+            }
+            node = node.children.get(uri.charAt(i++));
+            if (node == null) {
+                return false;
+            }
+        }
+
+        int extension = -1;
+        for (; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == ';' || c == '%' || c == '\\' || (c == '.' && i + 1 < uri.length() && uri.charAt(i + 1) == '.')) {
+                return false;
+            } else if (c == '/') {
+                extension = -1;
+            } else if (c == '.') {
+                extension = i + 1;
+            }
+        }
+        return extension > 0 && extension < uri.length() && extensions.contains(uri.substring(extension));
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private boolean terminal;
+    }
+}
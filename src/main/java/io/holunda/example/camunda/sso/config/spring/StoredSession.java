@@ -0,0 +1,57 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+/**
+ * A session as kept by a {@link SessionStore}. The attributes are opaque to the store. Every write increments the version.
+ */
+public class StoredSession {
+
+    private final String id;
+    private final long version;
+    private final long creationTime;
+    private final long lastAccessedTime;
+    private final int maxInactiveInterval;
+    private final byte[] attributes;
+
+    public StoredSession(String id, long version, long creationTime, long lastAccessedTime, int maxInactiveInterval, byte[] attributes) {
+        this.id = id;
+        this.version = version;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes = attributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * Epoch millis of the last persisted access, which may lag behind the actual last access.
+     */
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    /**
+     * In seconds, negative if the session never expires.
+     */
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    public long getExpiryTime() {
+        return maxInactiveInterval < 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveInterval * 1000L;
+    }
+
+    public byte[] getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,63 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Reads single claims from the payload of a JWT with a streaming tokenizer, stopping as soon as the claim is found. Claims before it are skipped
+ * without building strings, maps or lists for them, so large custom claims cost little more than the base64 decoding.<br>
+ * <br>
+ * The parser does not verify anything, it must only be used for routing decisions that are verified afterwards.
+ */
+@Component
+public class StreamingClaimParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Reads only the {@code iss} claim, stopping as soon as it is found.
+     *
+     * @return the unverified issuer or {@code null}, if the token has none.
+     */
+    public String parseIssuer(String tokenValue) {
+        try (JsonParser parser = JSON_FACTORY.createParser(payload(tokenValue))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Token payload is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String claim = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("iss".equals(claim)) {
+                    return text(parser, value);
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Token payload is not valid JSON", e);
+        }
+    }
+
+    private static byte[] payload(String tokenValue) {
+        int payloadStart = tokenValue.indexOf('.') + 1;
+        int payloadEnd = tokenValue.indexOf('.', payloadStart);
+        if (payloadStart == 0 || payloadEnd < 0) {
+            throw new IllegalArgumentException("Token is not a JWT");
+        }
+        return Base64.getUrlDecoder().decode(tokenValue.substring(payloadStart, payloadEnd));
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+}
@@ -1,18 +1,16 @@
 package io.holunda.example.camunda.sso.config.spring;
 
-import io.holunda.example.camunda.sso.config.spring.GrantedAuthoritiesExtractor;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
 import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Implementation of {@code OAuth2UserService} that does not call the UserInfo endpoint but just parses the access token. This is probably not really the intention of
  * the {@code OAuth2UserService} but it works with keycloak while the standard solution doesn't. Keycloak doesn't seem to return the user's roles from the UserInfo endpoint
@@ -20,25 +18,37 @@ import java.util.concurrent.ConcurrentHashMap;
  * {@link org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper GrantedAuthoritiesMapper} as seems to be the usually preferred way.
  *
  * See also <a href="https://docs.spring.io/spring-security/site/docs/5.1.4.RELEASE/reference/htmlsingle/#oauth2login-advanced-userinfo-endpoint">UserInfo Endpoint in Spring Security documentation</a>.
+ *
+ * The access token is verified with the same decoder as the tokens of the resource server, the one of its issuer (see {@link IssuerRegistry}), and
+ * its roles are mapped the same way. If revocation is enabled, the login is rejected if the token is revoked, see
+ * {@link RevocationList}.
  */
 public class TokenParsingOAuth2UserService implements OAuth2UserService<OAuth2UserRequest, OAuth2User> {
-    private final GrantedAuthoritiesExtractor grantedAuthoritiesExtractor;
-    private final ConcurrentHashMap<String, JwtDecoder> jwtDecoders = new ConcurrentHashMap<>();
+    private final IssuerRegistry issuerRegistry;
+    private final RevocationList revocationList;
 
-    public TokenParsingOAuth2UserService(GrantedAuthoritiesExtractor grantedAuthoritiesExtractor) {
-        this.grantedAuthoritiesExtractor = grantedAuthoritiesExtractor;
+    /**
+     * @param revocationList {@code null} if revocation is disabled.
+     */
+    public TokenParsingOAuth2UserService(IssuerRegistry issuerRegistry, RevocationList revocationList) {
+        this.issuerRegistry = issuerRegistry;
+        this.revocationList = revocationList;
     }
 
     @Override
     public OAuth2User loadUser(OAuth2UserRequest userRequest) {
 
         ClientRegistration clientRegistration = userRequest.getClientRegistration();
-        JwtDecoder jwtDecoder = jwtDecoders.computeIfAbsent(
-            clientRegistration.getRegistrationId(),
-            ignored -> NimbusJwtDecoder.withJwkSetUri(clientRegistration.getProviderDetails().getJwkSetUri()).build()
-        );
-        Jwt jwt = jwtDecoder.decode(userRequest.getAccessToken().getTokenValue());
-        JwtAuthenticationToken authenticationToken = (JwtAuthenticationToken) grantedAuthoritiesExtractor.convert(jwt);
+        String tokenValue = userRequest.getAccessToken().getTokenValue();
+        TrustedIssuer issuer = issuerRegistry.resolve(tokenValue);
+        if (issuer == null) {
+            throw new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "The token is not issued by a trusted issuer", null));
+        }
+        Jwt jwt = issuer.getJwtDecoder().decode(tokenValue);
+        if (revocationList != null && revocationList.isRevoked(jwt.getClaims())) {
+            throw new OAuth2AuthenticationException(new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "The token has been revoked", null));
+        }
+        JwtAuthenticationToken authenticationToken = (JwtAuthenticationToken) issuer.getAuthenticationConverter().convert(jwt);
 
         return new DefaultOAuth2User(
             authenticationToken.getAuthorities(),
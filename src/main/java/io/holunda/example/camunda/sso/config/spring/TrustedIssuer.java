@@ -0,0 +1,65 @@
+package io.holunda.example.camunda.sso.config.spring;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+/**
+ * Everything needed to verify the tokens of one issuer and derive their authorities, see {@link IssuerRegistry}.
+ */
+public class TrustedIssuer implements AutoCloseable {
+
+    private final String uri;
+    private final JwtDecoder jwtDecoder;
+    private final Converter<Jwt, AbstractAuthenticationToken> authenticationConverter;
+    private final JwtAuthenticationProvider authenticationProvider;
+    private final SharedJwkSource jwkSource;
+
+    /**
+     * @param jwkSource closed with the issuer, {@code null} if its lifecycle is managed elsewhere.
+     */
+    public TrustedIssuer(
+        String uri,
+        JwtDecoder jwtDecoder,
+        Converter<Jwt, AbstractAuthenticationToken> authenticationConverter,
+        SharedJwkSource jwkSource
+    ) {
+        this.uri = uri;
+        this.jwtDecoder = jwtDecoder;
+        this.authenticationConverter = authenticationConverter;
+        this.jwkSource = jwkSource;
+        this.authenticationProvider = new JwtAuthenticationProvider(jwtDecoder);
+        this.authenticationProvider.setJwtAuthenticationConverter(authenticationConverter);
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * Verifies the signature with the issuer's keys and the {@code iss} claim.
+     */
+    public JwtDecoder getJwtDecoder() {
+        return jwtDecoder;
+    }
+
+    /**
+     * Derives the authorities with the issuer's role mapping.
+     */
+    public Converter<Jwt, AbstractAuthenticationToken> getAuthenticationConverter() {
+        return authenticationConverter;
+    }
+
+    public JwtAuthenticationProvider getAuthenticationProvider() {
+        return authenticationProvider;
+    }
+
+    @Override
+    public void close() {
+        if (jwkSource != null) {
+            jwkSource.close();
+        }
+    }
+}
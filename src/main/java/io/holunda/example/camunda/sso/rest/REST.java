@@ -2,4 +2,6 @@ package io.holunda.example.camunda.sso.rest;
 
 public class REST {
     public static final String REST_PREFIX = "/public/rest";
+    public static final String REVOCATIONS_PATH = REST_PREFIX + "/revocations";
+    public static final String BACKCHANNEL_LOGOUT_PATH = "/public/logout/backchannel";
 }
@@ -0,0 +1,157 @@
+package io.holunda.example.camunda.sso.rest;
+
+import io.holunda.example.camunda.sso.config.ApplicationProperties;
+import io.holunda.example.camunda.sso.config.spring.IssuerRegistry;
+import io.holunda.example.camunda.sso.config.spring.Revocation;
+import io.holunda.example.camunda.sso.config.spring.RevocationList;
+import io.holunda.example.camunda.sso.config.spring.TrustedIssuer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static io.holunda.example.camunda.sso.rest.REST.BACKCHANNEL_LOGOUT_PATH;
+import static io.holunda.example.camunda.sso.rest.REST.REVOCATIONS_PATH;
+
+/**
+ * Records revocations in the {@link RevocationList}, either from the identity provider by OpenID Connect back-channel logout or from an administrator
+ * via the REST API (requires {@code application.revocation.admin-role}, see {@code MainSecurityConfiguration}).
+ */
+@RestController
+@ConditionalOnProperty(prefix = "application.revocation", name = "enabled", havingValue = "true")
+public class RevocationEndpoint {
+
+    private static final String BACKCHANNEL_LOGOUT_EVENT = "http://schemas.openid.net/event/backchannel-logout";
+    private static final String EVENTS = "events";
+    private static final String NONCE = "nonce";
+    // the size of the value column of the revocation table
+    private static final int MAXIMUM_VALUE_LENGTH = 255;
+
+    private final RevocationList revocationList;
+    private final IssuerRegistry issuerRegistry;
+    private final Set<String> clientIds = new HashSet<>();
+
+    public RevocationEndpoint(
+        RevocationList revocationList,
+        IssuerRegistry issuerRegistry,
+        ClientRegistrationRepository clientRegistrationRepository,
+        ApplicationProperties applicationProperties
+    ) {
+        this.revocationList = revocationList;
+        this.issuerRegistry = issuerRegistry;
+        this.clientIds.add(clientRegistrationRepository.findByRegistrationId(applicationProperties.getRegistration()).getClientId());
+        for (ApplicationProperties.Issuer issuer : applicationProperties.getIssuers().getRealms()) {
+            if (issuer.getRegistration() != null) {
+                this.clientIds.add(clientRegistrationRepository.findByRegistrationId(issuer.getRegistration()).getClientId());
+            }
+        }
+    }
+
+    /**
+     * Back-channel logout as specified by <a href="https://openid.net/specs/openid-connect-backchannel-1_0.html">OpenID Connect Back-Channel
+     * Logout</a>: revokes the session named by the logout token, or all sessions of its user if it names no session. The logout token is verified like
+     * an access token, by the decoder of its issuer, so this endpoint needs no further authentication.
+     */
+    @PostMapping(value = BACKCHANNEL_LOGOUT_PATH, consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<Map<String, String>> backChannelLogout(@RequestParam("logout_token") String logoutToken) {
+        TrustedIssuer issuer = issuerRegistry.resolve(logoutToken);
+        if (issuer == null) {
+            return invalidRequest("The logout token is not issued by a trusted issuer");
+        }
+        Jwt token;
+        try {
+            token = issuer.getJwtDecoder().decode(logoutToken);
+        } catch (JwtException e) {
+            return invalidRequest("The logout token is invalid");
+        }
+        Map<String, Object> events = token.getClaimAsMap(EVENTS);
+        if (events == null || !events.containsKey(BACKCHANNEL_LOGOUT_EVENT) || token.hasClaim(NONCE)) {
+            return invalidRequest("The token is no logout token");
+        }
+        if (token.getAudience() == null || token.getAudience().stream().noneMatch(clientIds::contains)) {
+            return invalidRequest("The logout token is not meant for this client");
+        }
+
+        String session = token.getClaimAsString(Revocation.Kind.SID.getClaim());
+        if (session != null) {
+            return logout(Revocation.Kind.SID, session);
+        }
+        return logout(Revocation.Kind.SUB, token.getSubject());
+    }
+
+    /**
+     * Revokes the given token ({@code jti}), session ({@code sid}) and user ({@code sub}), as far as set.
+     */
+    @PostMapping(value = REVOCATIONS_PATH, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, String>> revoke(@RequestBody RevocationRequest request) {
+        if (request.getJti() == null && request.getSid() == null && request.getSub() == null) {
+            return invalidRequest("Nothing to revoke, set jti, sid or sub");
+        }
+        if (isTooLong(request.getJti()) || isTooLong(request.getSid()) || isTooLong(request.getSub())) {
+            return invalidRequest("A value is too long");
+        }
+        if (request.getJti() != null) {
+            revocationList.revoke(Revocation.Kind.JTI, request.getJti());
+        }
+        if (request.getSid() != null) {
+            revocationList.revoke(Revocation.Kind.SID, request.getSid());
+        }
+        if (request.getSub() != null) {
+            revocationList.revoke(Revocation.Kind.SUB, request.getSub());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<Map<String, String>> logout(Revocation.Kind kind, String value) {
+        if (value == null || isTooLong(value)) {
+            return invalidRequest("The logout token names no valid session or user");
+        }
+        revocationList.revoke(kind, value);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).build();
+    }
+
+    private static boolean isTooLong(String value) {
+        return value != null && value.length() > MAXIMUM_VALUE_LENGTH;
+    }
+
+    private static ResponseEntity<Map<String, String>> invalidRequest(String description) {
+        return ResponseEntity.badRequest()
+                             .cacheControl(CacheControl.noStore())
+                             .body(Map.of("error", "invalid_request", "error_description", description));
+    }
+
+    public static class RevocationRequest {
+        private String jti;
+        private String sid;
+        private String sub;
+        public String getJti() {
+            return jti;
+        }
+        public void setJti(String jti) {
+            this.jti = jti;
+        }
+        public String getSid() {
+            return sid;
+        }
+        public void setSid(String sid) {
+            this.sid = sid;
+        }
+        public String getSub() {
+            return sub;
+        }
+        public void setSub(String sub) {
+            this.sub = sub;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS SSO_REVOCATION (
+    KIND VARCHAR(8) NOT NULL,
+    VAL VARCHAR(255) NOT NULL,
+    REVOKED_AT BIGINT NOT NULL,
+    EXPIRY_TIME BIGINT NOT NULL,
+    PRIMARY KEY (KIND, VAL)
+);
+
+CREATE INDEX IF NOT EXISTS SSO_REVOCATION_REVOKED_IX ON SSO_REVOCATION (REVOKED_AT);
+CREATE INDEX IF NOT EXISTS SSO_REVOCATION_EXPIRY_IX ON SSO_REVOCATION (EXPIRY_TIME);
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS SSO_SESSION (
+    ID VARCHAR(64) NOT NULL PRIMARY KEY,
+    VERSION BIGINT NOT NULL,
+    CREATION_TIME BIGINT NOT NULL,
+    LAST_ACCESS_TIME BIGINT NOT NULL,
+    MAX_INACTIVE_INTERVAL INT NOT NULL,
+    EXPIRY_TIME BIGINT NOT NULL,
+    UPDATE_TIME BIGINT NOT NULL,
+    ATTRIBUTES BLOB
+);
+
+CREATE INDEX IF NOT EXISTS SSO_SESSION_UPDATE_IX ON SSO_SESSION (UPDATE_TIME);
+CREATE INDEX IF NOT EXISTS SSO_SESSION_EXPIRY_IX ON SSO_SESSION (EXPIRY_TIME);
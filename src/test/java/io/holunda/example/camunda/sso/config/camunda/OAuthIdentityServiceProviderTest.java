@@ -0,0 +1,118 @@
+package io.holunda.example.camunda.sso.config.camunda;
+
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthGroup;
+import io.holunda.example.camunda.sso.config.camunda.OAuthIdentityServiceProvider.OAuthUser;
+import io.holunda.example.camunda.sso.config.spring.SsoMetrics;
+import org.camunda.bpm.engine.identity.Group;
+import org.camunda.bpm.engine.identity.User;
+import org.camunda.bpm.engine.impl.GroupQueryImpl;
+import org.camunda.bpm.engine.impl.UserQueryImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OAuthIdentityServiceProviderTest {
+
+    private static final OAuthUser ME = new OAuthUser("me", "Me", "Myself", "me@example.com");
+
+    private IdentitySnapshots identitySnapshots;
+    private KnownUsers knownUsers;
+
+    @BeforeEach
+    void setUp() {
+        identitySnapshots = mock(IdentitySnapshots.class);
+        knownUsers = mock(KnownUsers.class);
+        IdentitySnapshot snapshot = new IdentitySnapshot(ME, List.of(new OAuthGroup("my-role", "my-role", "oauth")), List.of());
+        when(identitySnapshots.current()).thenReturn(snapshot);
+    }
+
+    @Test
+    void countsIdLookupsLikeListWithoutDirectory() {
+        OAuthIdentityServiceProvider provider = new OAuthIdentityServiceProvider(identitySnapshots, null, knownUsers, SsoMetrics.DISABLED);
+
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userId("me"), 1);
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userIdIn("me", "nobody"), 1);
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userIdIn("me").userFirstName("Someone else"), 0);
+        assertCountMatchesList((GroupQueryImpl) provider.createGroupQuery().groupId("my-role"), 1);
+        assertCountMatchesList((GroupQueryImpl) provider.createGroupQuery().groupIdIn("my-role", "no-role"), 1);
+    }
+
+    @Test
+    void countsIdLookupsLikeListWithDirectory() {
+        IdentityDirectory identityDirectory = new IdentityDirectory(new StaticDirectoryClient(), RoleMapper.IDENTITY, Duration.ofMinutes(1));
+        identityDirectory.refresh();
+        OAuthIdentityServiceProvider provider = new OAuthIdentityServiceProvider(identitySnapshots, identityDirectory, knownUsers, SsoMetrics.DISABLED);
+
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userId("me"), 1);
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userId("alice"), 1);
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userIdIn("me", "alice", "nobody"), 2);
+        assertCountMatchesList((UserQueryImpl) provider.createUserQuery().userFirstName("Alice"), 1);
+        assertCountMatchesList((GroupQueryImpl) provider.createGroupQuery().groupIdIn("my-role", "accounting"), 2);
+    }
+
+    @Test
+    void returnsTheLoggedInUserAsSingleResultOnlyIfItMatches() {
+        OAuthIdentityServiceProvider provider = new OAuthIdentityServiceProvider(identitySnapshots, null, knownUsers, SsoMetrics.DISABLED);
+
+        assertThat(provider.createUserQuery().singleResult()).isSameAs(ME);
+        assertThat(provider.createUserQuery().userId("me").singleResult()).isSameAs(ME);
+        assertThat(provider.createUserQuery().userFirstName("Me").memberOfGroup("my-role").singleResult()).isSameAs(ME);
+        assertThat(provider.createUserQuery().userId("me").userFirstName("Someone else").singleResult()).isNull();
+        assertThat(provider.createUserQuery().userIdIn("alice", "bob").singleResult()).isNull();
+        assertThat(provider.createUserQuery().userEmailLike("%@other.org").singleResult()).isNull();
+        assertThat(provider.createUserQuery().memberOfGroup("other-role").singleResult()).isNull();
+        assertThat(provider.createUserQuery().memberOfTenant("other-tenant").singleResult()).isNull();
+    }
+
+    @Test
+    void returnsDirectoryUsersAsSingleResultIfTheLoggedInUserDoesNotMatch() {
+        IdentityDirectory identityDirectory = new IdentityDirectory(new StaticDirectoryClient(), RoleMapper.IDENTITY, Duration.ofMinutes(1));
+        identityDirectory.refresh();
+        OAuthIdentityServiceProvider provider = new OAuthIdentityServiceProvider(identitySnapshots, identityDirectory, knownUsers, SsoMetrics.DISABLED);
+
+        assertThat(provider.createUserQuery().userFirstName("Alice").singleResult()).extracting(User::getId).isEqualTo("alice");
+        assertThat(provider.createUserQuery().memberOfGroup("accounting").singleResult()).extracting(User::getId).isEqualTo("alice");
+        assertThat(provider.createUserQuery().userIdIn("alice", "bob").singleResult()).extracting(User::getId).isEqualTo("alice");
+        assertThat(provider.createUserQuery().userFirstName("Me").singleResult()).isSameAs(ME);
+        assertThat(provider.createUserQuery().userFirstName("Bob").singleResult()).isNull();
+    }
+
+    private static void assertCountMatchesList(UserQueryImpl query, long expected) {
+        List<User> users = query.executeList(null, null);
+        assertThat(users).hasSize((int) expected);
+        assertThat(query.executeCount(null)).isEqualTo(users.size());
+    }
+
+    private static void assertCountMatchesList(GroupQueryImpl query, long expected) {
+        List<Group> groups = query.executeList(null, null);
+        assertThat(groups).hasSize((int) expected);
+        assertThat(query.executeCount(null)).isEqualTo(groups.size());
+    }
+
+    private static class StaticDirectoryClient implements DirectoryClient {
+
+        @Override
+        public List<User> fetchUsers() {
+            return List.of(new OAuthUser("alice", "Alice", "Example", "alice@example.com"));
+        }
+
+        @Override
+        public List<Group> fetchGroups() {
+            return List.of(new OAuthGroup("accounting", "accounting", "role"));
+        }
+
+        @Override
+        public Map<String, Set<String>> fetchMembers(Collection<Group> groups) {
+            return Map.of("accounting", Set.of("alice"));
+        }
+    }
+}